@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares rebuilding an {@link RSSFeed} from its binary encoding with
+ * parsing the equivalent XML. The size of both representations is printed
+ * during setup.
+ *
+ * @author Mr Horn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedCodecBenchmark {
+
+  /**
+   * Number of &lt;item&gt; elements in the generated feed.
+   */
+  @Param({ "10", "100", "1000" })
+  public int items;
+
+  /**
+   * If {@code true}, every item has a large &lt;content:encoded&gt; element
+   * and several &lt;media:thumbnail&gt; elements.
+   */
+  @Param({ "false", "true" })
+  public boolean heavy;
+
+  private byte[] xml;
+
+  private byte[] encoded;
+
+  private RSSFeed feed;
+
+  private RSSParser parser;
+
+  @Setup
+  public void setup() {
+    parser = new RSSParser(new RSSConfig().withParserReuse(true));
+    xml = Feeds.generate(items, heavy);
+    feed = parser.parse(new ByteArrayInputStream(xml));
+    encoded = FeedCodec.encode(feed);
+  }
+
+  @Benchmark
+  public RSSFeed parseXml() {
+    return parser.parse(new ByteArrayInputStream(xml));
+  }
+
+  @Benchmark
+  public RSSFeed decode() throws IOException {
+    return FeedCodec.decode(encoded, 0, encoded.length);
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return FeedCodec.encode(feed);
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Benchmark helper class to generate synthetic RSS 2.0 feeds.
+ * 
+ * @author Mr Horn
+ */
+final class Feeds {
+
+  /**
+   * Markup which is repeated inside heavy &lt;content:encoded&gt; elements.
+   */
+  private static final String PARAGRAPH = "<p>Lorem ipsum dolor sit amet, "
+      + "<b>consectetur</b> adipiscing elit, sed do eiusmod tempor "
+      + "<a href=\"http://example.com/\">incididunt</a> ut labore et dolore "
+      + "magna aliqua.</p>\n";
+
+  private static final String[] DAYS = { "Sun", "Mon", "Tue", "Wed", "Thu",
+      "Fri", "Sat" };
+
+  /* Hide constructor */
+  private Feeds() {}
+
+  /**
+   * Returns the UTF-8 encoded XML of an RSS 2.0 feed with the specified
+   * number of &lt;item&gt; elements. Heavy items carry a large
+   * &lt;content:encoded&gt; element and several &lt;media:thumbnail&gt;
+   * elements.
+   */
+  static byte[] generate(int items, boolean heavy) {
+    final StringBuilder xml = new StringBuilder(items * (heavy ? 4096 : 512));
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    xml.append("<rss xmlns:media=\"http://search.yahoo.com/mrss/\"\n");
+    xml.append("     xmlns:content=\"http://purl.org/rss/1.0/modules/content/\" version=\"2.0\">\n");
+    xml.append("<channel>\n");
+    xml.append("  <title>Benchmark Channel</title>\n");
+    xml.append("  <link>http://example.com/</link>\n");
+    xml.append("  <description>Synthetic feed with ").append(items).append(" items</description>\n");
+    xml.append("  <lastBuildDate>Sun, 07 Nov 2010 09:33:11 GMT</lastBuildDate>\n");
+    xml.append("  <ttl>60</ttl>\n");
+
+    for (int i = 0; i < items; i++) {
+      xml.append("  <item>\n");
+      xml.append("    <title>News item ").append(i).append("</title>\n");
+      xml.append("    <link>http://example.com/news/").append(i).append("</link>\n");
+      xml.append("    <description>Description of news item ").append(i).append("</description>\n");
+      xml.append("    <pubDate>").append(DAYS[i % 7]).append(", ")
+          .append(10 + i % 18).append(" Nov 2010 ")
+          .append(10 + i % 14).append(':').append(10 + i % 50).append(":14 GMT</pubDate>\n");
+      xml.append("    <category>Category ").append(i % 5).append("</category>\n");
+
+      if (heavy) {
+        xml.append("    <content:encoded><![CDATA[");
+        for (int p = 0; p < 16; p++) {
+          xml.append(PARAGRAPH);
+        }
+        xml.append("]]></content:encoded>\n");
+
+        for (int t = 0; t < 3; t++) {
+          xml.append("    <media:thumbnail width=\"").append(66 * (t + 1))
+              .append("\" height=\"").append(49 * (t + 1))
+              .append("\" url=\"http://example.com/media/images/").append(i)
+              .append('_').append(t).append(".jpg\"/>\n");
+        }
+      }
+
+      xml.append("  </item>\n");
+    }
+
+    xml.append("</channel>\n");
+    xml.append("</rss>\n");
+
+    try {
+      return xml.toString().getBytes("UTF-8");
+    } catch (java.io.UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+}
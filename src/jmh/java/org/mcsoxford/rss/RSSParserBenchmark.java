@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput benchmark of the SAX-based {@link RSSParser} and the pull-based
+ * {@link RSSPullParser} on the same generated feeds. The {@code items} counter reports parsed RSS items per
+ * second. Run with the GC profiler ({@code -prof gc}) to obtain the allocated
+ * bytes per operation; divide {@code gc.alloc.rate.norm} by {@code items} to
+ * get the allocated bytes per RSS item.
+ * 
+ * @author Mr Horn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RSSParserBenchmark {
+
+  /**
+   * Number of &lt;item&gt; elements in the generated feed.
+   */
+  @Param({ "10", "100", "1000", "10000", "50000" })
+  public int items;
+
+  /**
+   * If {@code true}, every item has a large &lt;content:encoded&gt; element
+   * and several &lt;media:thumbnail&gt; elements.
+   */
+  @Param({ "false", "true" })
+  public boolean heavy;
+
+  /**
+   * If {@code true}, XML readers and SAX handlers are reused across parses.
+   */
+  @Param({ "false", "true" })
+  public boolean reuse;
+
+  /**
+   * Either {@code sax} for {@link RSSParser} or {@code pull} for
+   * {@link RSSPullParser}.
+   */
+  @Param({ "sax", "pull" })
+  public String engine;
+
+  private byte[] feed;
+
+  private RSSParserSPI parser;
+
+  /**
+   * Counts the parsed RSS items so JMH can report items per second.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    public long items;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      items = 0;
+    }
+
+  }
+
+  @Setup
+  public void setup() {
+    feed = Feeds.generate(items, heavy);
+    final RSSConfig config = new RSSConfig().withParserReuse(reuse);
+    if ("sax".equals(engine)) {
+      parser = new RSSParser(config);
+    } else if ("pull".equals(engine)) {
+      parser = new RSSPullParser(config);
+    } else {
+      throw new IllegalArgumentException("Unknown engine: " + engine);
+    }
+  }
+
+  @Benchmark
+  public RSSFeed parse(Counters counters) {
+    final RSSFeed result = parser.parse(new ByteArrayInputStream(feed));
+    counters.items += result.getItems().size();
+    return result;
+  }
+
+}
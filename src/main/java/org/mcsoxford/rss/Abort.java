@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Internal handle through which an RSS feed load in progress can be
+ * aborted from another thread. Aborting the HTTP request closes its
+ * connection, so that a pending download fails and parsing of the
+ * remainder of the RSS feed stops. This class is thread-safe.
+ *
+ * @author Mr Horn
+ */
+final class Abort {
+
+  private volatile boolean aborted;
+  private volatile HttpUriRequest request;
+
+  /**
+   * Aborts the HTTP request of the load, now or as soon as it is attached.
+   */
+  void abort() {
+    aborted = true;
+    final HttpUriRequest current = request;
+    if (current != null) {
+      current.abort();
+    }
+  }
+
+  /**
+   * Returns {@code true} if the load has been aborted.
+   */
+  boolean isAborted() {
+    return aborted;
+  }
+
+  /**
+   * Attaches the HTTP request of the load. If the load has been aborted
+   * already, the request is aborted before it is sent.
+   */
+  void attach(HttpUriRequest current) {
+    request = current;
+    // re-check since abort() may have missed the request
+    if (aborted) {
+      current.abort();
+    }
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+
+/**
+ * Internal helper class for compressed HTTP responses.
+ * 
+ * @author Mr Horn
+ */
+final class ContentEncodings {
+
+  private static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+  /**
+   * Supported content codings in order of preference.
+   */
+  private static final String SUPPORTED = "gzip, deflate";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /* Hide constructor */
+  private ContentEncodings() {}
+
+  /**
+   * Asks the server to compress the HTTP response.
+   */
+  static void accept(HttpRequest request) {
+    request.setHeader(ACCEPT_ENCODING, SUPPORTED);
+  }
+
+  /**
+   * Returns the content of the HTTP entity, decompressing it on the fly if it
+   * has a gzip or deflate Content-Encoding. Closing the returned stream closes
+   * the content stream of the entity.
+   * 
+   * @throws IOException if the content coding is not supported
+   */
+  static InputStream decode(HttpEntity entity) throws IOException {
+    final InputStream content = entity.getContent();
+    final Header encoding = entity.getContentEncoding();
+    if (encoding == null) {
+      return content;
+    }
+
+    // Codings are listed in the order in which they were applied
+    final HeaderElement[] codings = encoding.getElements();
+    InputStream decoded = content;
+    for (int i = codings.length - 1; i >= 0; i--) {
+      final String coding = codings[i].getName();
+      if ("gzip".equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+        decoded = new GZIPInputStream(decoded, BUFFER_SIZE);
+      } else if ("deflate".equalsIgnoreCase(coding)) {
+        decoded = inflate(decoded);
+      } else if (!"identity".equalsIgnoreCase(coding)) {
+        Resources.closeQuietly(content);
+        throw new IOException("Unsupported content encoding: " + coding);
+      }
+    }
+
+    return decoded;
+  }
+
+  /**
+   * Decompresses "deflate" content. Although RFC 2616 specifies the zlib
+   * format, some servers send raw deflate data, so the zlib header is
+   * detected first.
+   */
+  private static InputStream inflate(InputStream content) throws IOException {
+    final BufferedInputStream buffered = new BufferedInputStream(content, BUFFER_SIZE);
+    buffered.mark(2);
+    final int first = buffered.read();
+    final int second = buffered.read();
+    buffered.reset();
+
+    final boolean zlib = first != -1 && second != -1 && (first & 0x0F) == 8
+        && ((first << 8) | second) % 31 == 0;
+
+    final Inflater inflater = new Inflater(/* nowrap */!zlib);
+    return new InflaterInputStream(buffered, inflater, BUFFER_SIZE) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          // custom inflaters are not released by InflaterInputStream
+          inflater.end();
+        }
+      }
+    };
+  }
+
+}
@@ -16,37 +16,491 @@
 
 package org.mcsoxford.rss;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-
 /**
- * Internal helper class for date conversions.
+ * Internal helper class for date conversions. All methods are thread-safe and
+ * lock-free. Unlike {@link java.text.SimpleDateFormat}, the RFC 822 parser
+ * does not throw exceptions on its fast path.
  * 
  * @author Mr Horn
  */
 final class Dates {
 
   /**
-   * @see <a href="http://www.ietf.org/rfc/rfc0822.txt">RFC 822</a>
+   * Value returned by {@link #parseRfc822Millis(String)} if the string is not a
+   * valid date/time.
+   */
+  static final long INVALID = Long.MIN_VALUE;
+
+  /**
+   * Number of entries in the memo of recently parsed dates. Must be a power of
+   * two.
+   */
+  private static final int CACHE_SIZE = 256;
+
+  /**
+   * Direct-mapped memo of recently parsed date strings. Since entries are
+   * immutable, racy reads and writes of array elements are benign.
+   */
+  private static final Entry[] CACHE = new Entry[CACHE_SIZE];
+
+  /**
+   * Immutable memo entry.
    */
-  private static final SimpleDateFormat RFC822 = new SimpleDateFormat(
-      "EEE, dd MMM yyyy HH:mm:ss Z", java.util.Locale.ENGLISH);
+  private static final class Entry {
+    final String key;
+    final long millis;
+
+    Entry(String key, long millis) {
+      this.key = key;
+      this.millis = millis;
+    }
+  }
+
+  private static final long MILLIS_PER_MINUTE = 60L * 1000L;
 
   /* Hide constructor */
   private Dates() {}
-  
+
   /**
    * Parses string as an RFC 822 date/time.
    * 
    * @throws RSSFault if the string is not a valid RFC 822 date/time
    */
   static java.util.Date parseRfc822(String date) {
-    try {
-      return RFC822.parse(date);
-    } catch (ParseException e) {
-      throw new RSSFault(e);
+    final long millis = parseRfc822Millis(date);
+    if (millis == INVALID) {
+      throw new RSSFault("Unparseable date: \"" + date + "\"");
     }
+
+    return new java.util.Date(millis);
   }
 
-}
+  /**
+   * Parses string as an RFC 822 date/time. If {@code lenient} is {@code true},
+   * invalid date/times yield {@code null} rather than an {@link RSSFault}.
+   * 
+   * @throws RSSFault if the string is not a valid RFC 822 date/time and
+   *           {@code lenient} is {@code false}
+   */
+  static java.util.Date parseRfc822(String date, boolean lenient) {
+    if (!lenient) {
+      return parseRfc822(date);
+    }
+
+    final long millis = parseRfc822Millis(date);
+    return millis == INVALID ? null : new java.util.Date(millis);
+  }
+
+  /**
+   * Parses string as an RFC 822 or RFC 1123 date/time and returns the
+   * milliseconds since the epoch. Two-digit years, missing seconds and named
+   * time zones are supported. Strings which look like ISO 8601 date/times are
+   * accepted too.
+   * 
+   * @return milliseconds since January 1, 1970, 00:00:00 GMT or
+   *         {@link #INVALID} if the string is not a valid date/time
+   */
+  static long parseRfc822Millis(String date) {
+    if (date == null) {
+      return INVALID;
+    }
+
+    final int hash = date.hashCode();
+    final int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+    final Entry entry = CACHE[index];
+    if (entry != null && entry.key.equals(date)) {
+      return entry.millis;
+    }
+
+    final long millis = parse(date);
+    CACHE[index] = new Entry(date, millis);
+    return millis;
+  }
+
+  /**
+   * Internal position within the string being parsed.
+   */
+  private static final class Cursor {
+    final String s;
+    final int end;
+    int i;
+
+    Cursor(String s) {
+      this.s = s;
+      this.end = s.length();
+    }
+
+    boolean hasNext() {
+      return i < end;
+    }
+
+    char peek() {
+      return s.charAt(i);
+    }
+
+    void skipWhitespace() {
+      while (i < end && s.charAt(i) <= ' ') {
+        i++;
+      }
+    }
+
+    /**
+     * Consumes the specified character if it is the next one.
+     */
+    boolean skip(char c) {
+      if (i < end && s.charAt(i) == c) {
+        i++;
+        return true;
+      }
+
+      return false;
+    }
+
+    /**
+     * Consumes up to {@code max} decimal digits. Returns {@code -1} if fewer
+     * than {@code min} digits were found.
+     */
+    int digits(int min, int max) {
+      final int start = i;
+      int value = 0;
+      while (i < end && i - start < max) {
+        final char c = s.charAt(i);
+        if (c < '0' || c > '9') {
+          break;
+        }
+        value = value * 10 + (c - '0');
+        i++;
+      }
+
+      return i - start < min ? -1 : value;
+    }
+
+    /**
+     * Consumes ASCII letters and returns the number of letters consumed.
+     */
+    int letters() {
+      final int start = i;
+      while (i < end && isLetter(s.charAt(i))) {
+        i++;
+      }
+
+      return i - start;
+    }
+  }
+
+  private static long parse(String date) {
+    final Cursor cursor = new Cursor(date);
+    cursor.skipWhitespace();
+    if (!cursor.hasNext()) {
+      return INVALID;
+    }
+
+    final char first = cursor.peek();
+    if (first >= '0' && first <= '9' && date.length() - cursor.i > 4
+        && date.charAt(cursor.i + 4) == '-') {
+      return parseIso8601(cursor);
+    }
+
+    return parseRfc822(cursor);
+  }
+
+  /**
+   * Parses {@code [day-of-week[,]] day month year hour:minute[:second] [zone]}.
+   */
+  private static long parseRfc822(Cursor cursor) {
+    // optional day of week which is not validated
+    if (isLetter(cursor.peek())) {
+      cursor.letters();
+      cursor.skip(',');
+      cursor.skipWhitespace();
+    }
+
+    final int day = cursor.digits(1, 2);
+    if (day < 1) {
+      return INVALID;
+    }
+    skipSeparator(cursor);
+
+    final int start = cursor.i;
+    if (cursor.letters() < 3) {
+      return INVALID;
+    }
+    final int month = month(cursor.s, start);
+    if (month < 0) {
+      return INVALID;
+    }
+    skipSeparator(cursor);
+
+    final int yearStart = cursor.i;
+    int year = cursor.digits(2, 4);
+    if (year < 0) {
+      return INVALID;
+    }
+    final int yearDigits = cursor.i - yearStart;
+    if (yearDigits == 2) {
+      // RFC 2822, section 4.3
+      year += year < 50 ? 2000 : 1900;
+    } else if (yearDigits == 3) {
+      year += 1900;
+    }
+    cursor.skipWhitespace();
+
+    final int hour = cursor.digits(1, 2);
+    if (hour < 0 || !cursor.skip(':')) {
+      return INVALID;
+    }
+    final int minute = cursor.digits(2, 2);
+    if (minute < 0) {
+      return INVALID;
+    }
+    int second = 0;
+    if (cursor.skip(':')) {
+      second = cursor.digits(2, 2);
+      if (second < 0) {
+        return INVALID;
+      }
+    }
+    cursor.skipWhitespace();
+
+    final int offset = zone(cursor);
+    if (offset == Integer.MIN_VALUE || hour > 23 || minute > 59 || second > 60) {
+      return INVALID;
+    }
 
+    return millis(year, month, day, hour, minute, second, 0, offset);
+  }
+
+  /**
+   * Parses {@code yyyy-MM-dd['T'HH:mm[:ss[.SSS]]][Z|+hh:mm|-hh:mm]}.
+   */
+  private static long parseIso8601(Cursor cursor) {
+    final int year = cursor.digits(4, 4);
+    if (year < 0 || !cursor.skip('-')) {
+      return INVALID;
+    }
+    final int month = cursor.digits(2, 2);
+    if (month < 1 || month > 12 || !cursor.skip('-')) {
+      return INVALID;
+    }
+    final int day = cursor.digits(2, 2);
+    if (day < 1) {
+      return INVALID;
+    }
+
+    int hour = 0;
+    int minute = 0;
+    int second = 0;
+    int millis = 0;
+    if (cursor.skip('T') || cursor.skip('t') || cursor.skip(' ')) {
+      hour = cursor.digits(2, 2);
+      if (hour < 0 || !cursor.skip(':')) {
+        return INVALID;
+      }
+      minute = cursor.digits(2, 2);
+      if (minute < 0) {
+        return INVALID;
+      }
+      if (cursor.skip(':')) {
+        second = cursor.digits(2, 2);
+        if (second < 0) {
+          return INVALID;
+        }
+        if (cursor.skip('.') || cursor.skip(',')) {
+          final int start = cursor.i;
+          millis = cursor.digits(1, 3);
+          if (millis < 0) {
+            return INVALID;
+          }
+          for (int digits = cursor.i - start; digits < 3; digits++) {
+            millis *= 10;
+          }
+          // ignore sub-millisecond digits
+          cursor.digits(0, Integer.MAX_VALUE);
+        }
+      }
+    }
+    cursor.skipWhitespace();
+
+    final int offset = zone(cursor);
+    if (offset == Integer.MIN_VALUE || hour > 23 || minute > 59 || second > 60) {
+      return INVALID;
+    }
+
+    return millis(year, month - 1, day, hour, minute, second, millis, offset);
+  }
+
+  /**
+   * Parses an optional time zone and returns its offset from GMT in minutes.
+   * A missing time zone denotes GMT. Trailing comments such as
+   * {@code (PST)} are ignored.
+   * 
+   * @return {@link Integer#MIN_VALUE} if the time zone is invalid
+   */
+  private static int zone(Cursor cursor) {
+    if (!cursor.hasNext() || cursor.peek() == '(') {
+      return 0;
+    }
+
+    final char c = cursor.peek();
+    int offset;
+    if (c == '+' || c == '-') {
+      cursor.i++;
+      offset = numericOffset(cursor, c == '-');
+    } else if (isLetter(c)) {
+      final int start = cursor.i;
+      offset = namedOffset(cursor.s, start, cursor.letters());
+      if (offset != Integer.MIN_VALUE && cursor.hasNext()
+          && (cursor.peek() == '+' || cursor.peek() == '-')) {
+        // e.g. GMT+01:00
+        final int relative = numericOffset(cursor, cursor.s.charAt(cursor.i++) == '-');
+        offset = relative == Integer.MIN_VALUE ? relative : offset + relative;
+      }
+    } else {
+      return Integer.MIN_VALUE;
+    }
+
+    if (offset == Integer.MIN_VALUE) {
+      return offset;
+    }
+
+    cursor.skipWhitespace();
+    if (cursor.hasNext() && cursor.peek() != '(') {
+      return Integer.MIN_VALUE;
+    }
+
+    return offset;
+  }
+
+  /**
+   * Parses {@code hhmm}, {@code hh:mm} or {@code hh} after the sign.
+   */
+  private static int numericOffset(Cursor cursor, boolean negative) {
+    final int start = cursor.i;
+    int hours = cursor.digits(1, 4);
+    if (hours < 0) {
+      return Integer.MIN_VALUE;
+    }
+
+    int minutes = 0;
+    if (cursor.i - start > 2) {
+      // hhmm or hmm
+      minutes = hours % 100;
+      hours /= 100;
+    } else if (cursor.skip(':')) {
+      minutes = cursor.digits(2, 2);
+      if (minutes < 0) {
+        return Integer.MIN_VALUE;
+      }
+    }
+
+    final int offset = hours * 60 + minutes;
+    return negative ? -offset : offset;
+  }
+
+  /**
+   * Returns the offset of a named time zone in minutes.
+   * 
+   * @return {@link Integer#MIN_VALUE} if the time zone is unknown
+   */
+  private static int namedOffset(String s, int start, int length) {
+    if (length == 1) {
+      // RFC 1123 recommends to treat military time zones as unknown, i.e. GMT
+      return 0;
+    }
+
+    if (length == 2 && s.regionMatches(true, start, "UT", 0, 2)) {
+      return 0;
+    }
+
+    for (int i = 0; i < ZONE_NAMES.length; i++) {
+      if (ZONE_NAMES[i].length() == length
+          && s.regionMatches(true, start, ZONE_NAMES[i], 0, length)) {
+        return ZONE_OFFSETS[i];
+      }
+    }
+
+    return Integer.MIN_VALUE;
+  }
+
+  /**
+   * RFC 822 time zone names, followed by other unambiguous abbreviations
+   * which are common in RSS feeds. Ambiguous ones such as "IST", "BST" and
+   * "AST" are unknown.
+   */
+  private static final String[] ZONE_NAMES = { "GMT", "UTC", "EST", "EDT",
+      "CST", "CDT", "MST", "MDT", "PST", "PDT",
+      "WET", "WEST", "CET", "CEST", "MEZ", "MESZ", "EET", "EEST", "MSK",
+      "AKST", "AKDT", "HST", "ADT", "NST", "NDT",
+      "JST", "KST", "HKT", "SGT", "AWST", "ACST", "ACDT", "AEST", "AEDT",
+      "NZST", "NZDT" };
+
+  private static final int[] ZONE_OFFSETS = { 0, 0, -5 * 60, -4 * 60,
+      -6 * 60, -5 * 60, -7 * 60, -6 * 60, -8 * 60, -7 * 60,
+      0, 60, 60, 2 * 60, 60, 2 * 60, 2 * 60, 3 * 60, 3 * 60,
+      -9 * 60, -8 * 60, -10 * 60, -3 * 60, -3 * 60 - 30, -2 * 60 - 30,
+      9 * 60, 9 * 60, 8 * 60, 8 * 60, 8 * 60, 9 * 60 + 30, 10 * 60 + 30, 10 * 60, 11 * 60,
+      12 * 60, 13 * 60 };
+
+  private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+  /**
+   * Returns the zero-based month whose name starts at the specified index.
+   * 
+   * @return {@code -1} if no month has such a name
+   */
+  private static int month(String s, int start) {
+    for (int i = 0; i < 12; i++) {
+      if (s.regionMatches(true, start, MONTHS, i * 3, 3)) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Skips whitespace and dashes between the day, month and year.
+   */
+  private static void skipSeparator(Cursor cursor) {
+    cursor.skipWhitespace();
+    if (cursor.skip('-')) {
+      cursor.skipWhitespace();
+    }
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  /**
+   * Converts the fields of a proleptic Gregorian date/time to milliseconds
+   * since the epoch. Out-of-range days roll over like a lenient
+   * {@link java.util.Calendar}.
+   * 
+   * @param month zero-based month
+   * @param offset offset from GMT in minutes
+   */
+  private static long millis(int year, int month, int day, int hour,
+      int minute, int second, int millis, int offset) {
+    final long days = daysFromCivil(year, month + 1, 1) + day - 1;
+    final long minutes = days * 24L * 60L + hour * 60L + minute - offset;
+    return minutes * MILLIS_PER_MINUTE + second * 1000L + millis;
+  }
+
+  /**
+   * Returns the number of days since 1970-01-01.
+   * 
+   * @param month one-based month
+   * @see <a href="http://howardhinnant.github.io/date_algorithms.html">
+   *      chrono-compatible low-level date algorithms</a>
+   */
+  private static long daysFromCivil(int year, int month, int day) {
+    final int y = month <= 2 ? year - 1 : year;
+    final long era = (y >= 0 ? y : y - 399) / 400;
+    final long yoe = y - era * 400;
+    final long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    final long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+    return era * 146097 + doe - 719468;
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Internal watchdog which aborts the HTTP request of an RSS feed load when
+ * the response headers have not arrived in time, or when the load as a
+ * whole takes too long. Aborting closes the connection, so that a server
+ * which trickles bytes cannot hold the loading thread even while the parser
+ * is reading the response. All deadlines share one daemon timer thread.
+ *
+ * @author Mr Horn
+ */
+final class Deadline {
+
+  /**
+   * Number of cancelled deadlines after which the timer queue is purged.
+   */
+  private static final int PURGE_INTERVAL = 1024;
+
+  private static Timer timer;
+  private static int cancelled;
+
+  private final HttpUriRequest request;
+  private final TimerTask firstByte;
+  private final TimerTask total;
+
+  /**
+   * Reason why the request has been aborted, or {@code null} if it has not.
+   */
+  private volatile String expired;
+
+  /**
+   * Starts the deadlines of the HTTP request. A deadline of zero is
+   * unlimited.
+   */
+  Deadline(HttpUriRequest request, long firstByteMillis, long totalMillis) {
+    this.request = request;
+    this.firstByte = firstByteMillis > 0 ? abortAfter(firstByteMillis,
+        "No response within " + firstByteMillis + " ms") : null;
+    this.total = totalMillis > 0 ? abortAfter(totalMillis,
+        "Loading took longer than " + totalMillis + " ms") : null;
+  }
+
+  private TimerTask abortAfter(long millis, final String reason) {
+    final TimerTask task = new TimerTask() {
+      @Override
+      public void run() {
+        expired = reason;
+        request.abort();
+      }
+    };
+    timer().schedule(task, millis);
+    return task;
+  }
+
+  private static synchronized Timer timer() {
+    if (timer == null) {
+      timer = new Timer("RSS feed load deadlines", /* daemon */true);
+    }
+    return timer;
+  }
+
+  private static void cancel(TimerTask task) {
+    if (task != null && task.cancel()) {
+      synchronized (Deadline.class) {
+        if (++cancelled == PURGE_INTERVAL) {
+          cancelled = 0;
+          timer.purge();
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops the deadline for the response headers once they have arrived.
+   */
+  void responded() {
+    cancel(firstByte);
+  }
+
+  /**
+   * Stops all deadlines once the load has finished.
+   */
+  void finished() {
+    cancel(firstByte);
+    cancel(total);
+  }
+
+  /**
+   * Returns why the request has been aborted, or {@code null} if no deadline
+   * has expired.
+   */
+  String expired() {
+    return expired;
+  }
+
+}
@@ -0,0 +1,554 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Internal binary serialization of parsed RSS feeds. Every encoding starts
+ * with a version byte so that RSS feeds written by other versions of this
+ * library are recognized as unreadable.
+ * <p>
+ * Versions 2 and later are designed for compactness and decoding speed:
+ * <ul>
+ * <li>integers are variable-length, seven bits per byte, with signed values
+ * zigzag-encoded;</li>
+ * <li>dates are stored as the difference in milliseconds to the previous
+ * date in the encoding;</li>
+ * <li>categories, MIME types and the scheme and host of URIs are written
+ * once and afterwards referenced by their index in a string table;</li>
+ * <li>optional fields are omitted and marked absent in a bit set.</li>
+ * </ul>
+ *
+ * @author Mr Horn
+ */
+final class FeedCodec {
+
+  /* Hide constructor */
+  private FeedCodec() {}
+
+  /**
+   * Version of the encoding written by {@link #encode(RSSFeed)}.
+   */
+  static final byte VERSION = 4;
+
+  /**
+   * Oldest version which can still be decoded. Version 2 lacks RSS item
+   * GUIDs and version 3 lacks skip hours and days, but they are otherwise
+   * identical.
+   */
+  private static final byte MIN_VERSION = 2;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  // Bits which mark the presence of optional fields
+  private static final int TITLE = 1;
+  private static final int LINK = 1 << 1;
+  private static final int DESCRIPTION = 1 << 2;
+  private static final int PUB_DATE = 1 << 3;
+  private static final int CONTENT = 1 << 4;
+  private static final int ENCLOSURE = 1 << 5;
+  private static final int TTL = 1 << 6;
+  private static final int LAST_BUILD_DATE = 1 << 7;
+  private static final int TRUNCATED = 1 << 8;
+  private static final int GUID = 1 << 9;
+  private static final int SKIP_HOURS = 1 << 10;
+  private static final int SKIP_DAYS = 1 << 11;
+
+  /**
+   * String table reference to a string which follows inline and is added to
+   * the table. Other references are table indices offset by one.
+   */
+  private static final int NEW_STRING = 0;
+
+  /**
+   * Writes the RSS feed, including all of its RSS items, preceded by the
+   * version and length of the encoding.
+   */
+  static void encode(RSSFeed feed, DataOutput out) throws IOException {
+    final byte[] bytes = encode(feed);
+    out.writeByte(VERSION);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads an RSS feed written by {@link #encode(RSSFeed, DataOutput)}. A
+   * length prefix beyond the specified maximum, such as the size of the file
+   * being read, is treated as corrupt before any buffer is allocated.
+   *
+   * @throws IOException if the encoding is unsupported or corrupt
+   */
+  static RSSFeed decode(DataInput in, long maxLength) throws IOException {
+    final byte version = in.readByte();
+    if (version < MIN_VERSION || version > VERSION) {
+      throw new IOException("Unsupported RSS feed encoding version " + version);
+    }
+
+    final int length = in.readInt();
+    if (length < 1 || length > maxLength) {
+      throw new IOException("Corrupt RSS feed encoding length " + length);
+    }
+
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return decode(bytes, 0, length);
+  }
+
+  /**
+   * Returns the encoding of the RSS feed, including all of its RSS items.
+   */
+  static byte[] encode(RSSFeed feed) {
+    final Encoder encoder = new Encoder(256 + 256 * feed.getItems().size());
+    encoder.writeByte(VERSION);
+
+    int flags = baseFlags(feed);
+    if (feed.getTTL() != null) {
+      flags |= TTL;
+    }
+    if (feed.getLastBuildDate() != null) {
+      flags |= LAST_BUILD_DATE;
+    }
+    if (feed.isTruncated()) {
+      flags |= TRUNCATED;
+    }
+    if (feed.getSkipHourBits() != 0) {
+      flags |= SKIP_HOURS;
+    }
+    if (feed.getSkipDayBits() != 0) {
+      flags |= SKIP_DAYS;
+    }
+    encoder.writeVarint(flags);
+    encoder.writeBase(feed, flags);
+    if ((flags & TTL) != 0) {
+      encoder.writeSigned(feed.getTTL());
+    }
+    if ((flags & LAST_BUILD_DATE) != 0) {
+      encoder.writeDate(feed.getLastBuildDate());
+    }
+    if ((flags & SKIP_HOURS) != 0) {
+      encoder.writeVarint(feed.getSkipHourBits());
+    }
+    if ((flags & SKIP_DAYS) != 0) {
+      encoder.writeVarint(feed.getSkipDayBits());
+    }
+
+    final List<RSSItem> items = feed.getItems();
+    encoder.writeVarint(items.size());
+    for (RSSItem item : items) {
+      encoder.writeItem(item);
+    }
+    return encoder.toByteArray();
+  }
+
+  /**
+   * Reads an RSS feed from the specified range of bytes written by
+   * {@link #encode(RSSFeed)}.
+   *
+   * @throws IOException if the encoding is unsupported or corrupt
+   */
+  static RSSFeed decode(byte[] bytes, int offset, int length) throws IOException {
+    final Decoder decoder = new Decoder(bytes, offset, length);
+    try {
+      final byte version = decoder.readByte();
+      if (version < MIN_VERSION || version > VERSION) {
+        throw new IOException("Unsupported RSS feed encoding version " + version);
+      }
+
+      final RSSFeed feed = new RSSFeed();
+      final int flags = decoder.readInt();
+      decoder.readBase(feed, flags);
+      if ((flags & TTL) != 0) {
+        feed.setTTL(decoder.readSigned());
+      }
+      if ((flags & LAST_BUILD_DATE) != 0) {
+        feed.setLastBuildDate(decoder.readDate());
+      }
+      if ((flags & SKIP_HOURS) != 0) {
+        feed.setSkipHourBits(decoder.readInt());
+      }
+      if ((flags & SKIP_DAYS) != 0) {
+        feed.setSkipDayBits(decoder.readInt());
+      }
+      feed.setTruncated((flags & TRUNCATED) != 0);
+
+      final int itemCount = decoder.readInt();
+      for (int i = 0; i < itemCount; i++) {
+        feed.addItem(decoder.readItem());
+      }
+      return feed;
+    } catch (IndexOutOfBoundsException e) {
+      // Reference to a string beyond the end of the string table
+      throw new IOException("Corrupt RSS feed encoding");
+    }
+  }
+
+  /**
+   * Returns the encoding of a single RSS item, independent of any RSS feed.
+   */
+  static byte[] encode(RSSItem item) {
+    final Encoder encoder = new Encoder(256);
+    encoder.writeByte(VERSION);
+    encoder.writeItem(item);
+    return encoder.toByteArray();
+  }
+
+  /**
+   * Reads an RSS item from the specified range of bytes written by
+   * {@link #encode(RSSItem)}.
+   *
+   * @throws IOException if the encoding is unsupported or corrupt
+   */
+  static RSSItem decodeItem(byte[] bytes, int offset, int length) throws IOException {
+    final Decoder decoder = new Decoder(bytes, offset, length);
+    try {
+      final byte version = decoder.readByte();
+      if (version < MIN_VERSION || version > VERSION) {
+        throw new IOException("Unsupported RSS item encoding version " + version);
+      }
+      return decoder.readItem();
+    } catch (IndexOutOfBoundsException e) {
+      // Reference to a string beyond the end of the string table
+      throw new IOException("Corrupt RSS item encoding");
+    }
+  }
+
+  private static int baseFlags(RSSBase base) {
+    int flags = 0;
+    if (base.getTitle() != null) {
+      flags |= TITLE;
+    }
+    if (base.getLinkString() != null) {
+      flags |= LINK;
+    }
+    if (base.getDescription() != null) {
+      flags |= DESCRIPTION;
+    }
+    if (base.getPubDate() != null) {
+      flags |= PUB_DATE;
+    }
+    return flags;
+  }
+
+  /**
+   * Returns the length of the scheme and authority of the URI, or zero if it
+   * has none.
+   */
+  private static int originLength(String uri) {
+    final int scheme = uri.indexOf("://");
+    if (scheme < 0) {
+      return 0;
+    }
+
+    final int path = uri.indexOf('/', scheme + 3);
+    return path < 0 ? uri.length() : path;
+  }
+
+  /**
+   * Growable byte array with variable-length integer encoding.
+   */
+  private static final class Encoder {
+
+    private final Map<String, Integer> table = new HashMap<String, Integer>();
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * Value of the most recently written date.
+     */
+    private long date;
+
+    Encoder(int capacity) {
+      buffer = new byte[capacity];
+    }
+
+    void writeItem(RSSItem item) {
+      int flags = baseFlags(item);
+      if (item.getContent() != null) {
+        flags |= CONTENT;
+      }
+      if (item.getEnclosure() != null) {
+        flags |= ENCLOSURE;
+      }
+      if (item.getGuid() != null) {
+        flags |= GUID;
+      }
+      writeVarint(flags);
+      writeBase(item, flags);
+      if ((flags & CONTENT) != 0) {
+        writeString(item.getContent());
+      }
+      if ((flags & GUID) != 0) {
+        writeString(item.getGuid());
+      }
+
+      final List<MediaThumbnail> thumbnails = item.getThumbnails();
+      writeVarint(thumbnails.size());
+      for (MediaThumbnail thumbnail : thumbnails) {
+        writeUri(thumbnail.toString());
+        writeSigned(thumbnail.getHeight());
+        writeSigned(thumbnail.getWidth());
+      }
+
+      if ((flags & ENCLOSURE) != 0) {
+        final MediaEnclosure enclosure = item.getEnclosure();
+        writeUri(enclosure.getUrlString());
+        writeSigned(enclosure.getLength());
+        writeShared(enclosure.getMimeType());
+      }
+    }
+
+    void writeBase(RSSBase base, int flags) {
+      if ((flags & TITLE) != 0) {
+        writeString(base.getTitle());
+      }
+      if ((flags & LINK) != 0) {
+        writeUri(base.getLinkString());
+      }
+      if ((flags & DESCRIPTION) != 0) {
+        writeString(base.getDescription());
+      }
+      final List<String> categories = base.getCategories();
+      writeVarint(categories.size());
+      for (String category : categories) {
+        writeShared(category);
+      }
+      if ((flags & PUB_DATE) != 0) {
+        writeDate(base.getPubDate());
+      }
+    }
+
+    void writeUri(String value) {
+      final int origin = originLength(value);
+      writeShared(value.substring(0, origin));
+      writeString(value.substring(origin));
+    }
+
+    void writeDate(Date value) {
+      final long time = value.getTime();
+      writeSigned(time - date);
+      date = time;
+    }
+
+    /**
+     * Writes a reference to the string table, adding the string if it is not
+     * in the table yet.
+     */
+    void writeShared(String value) {
+      final Integer index = table.get(value);
+      if (index != null) {
+        writeVarint(index + 1);
+        return;
+      }
+
+      table.put(value, table.size());
+      writeVarint(NEW_STRING);
+      writeString(value);
+    }
+
+    void writeString(String value) {
+      final byte[] bytes = value.getBytes(UTF8);
+      writeVarint(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, size, bytes.length);
+      size += bytes.length;
+    }
+
+    void writeSigned(long value) {
+      writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    void writeVarint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[size++] = (byte) value;
+    }
+
+    void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (size + extra > buffer.length) {
+        final byte[] larger = new byte[Math.max(buffer.length * 2, size + extra)];
+        System.arraycopy(buffer, 0, larger, 0, size);
+        buffer = larger;
+      }
+    }
+
+    byte[] toByteArray() {
+      final byte[] bytes = new byte[size];
+      System.arraycopy(buffer, 0, bytes, 0, size);
+      return bytes;
+    }
+
+  }
+
+  /**
+   * Cursor over a byte array written by an {@link Encoder}.
+   */
+  private static final class Decoder {
+
+    private final List<String> table = new ArrayList<String>();
+    private final byte[] buffer;
+    private final int end;
+    private int position;
+
+    /**
+     * Value of the most recently read date.
+     */
+    private long date;
+
+    Decoder(byte[] buffer, int offset, int length) {
+      this.buffer = buffer;
+      this.position = offset;
+      this.end = offset + length;
+    }
+
+    RSSItem readItem() throws IOException {
+      final RSSItem item = new RSSItem((byte) 0, (byte) 0);
+      final int flags = readInt();
+      readBase(item, flags);
+      if ((flags & CONTENT) != 0) {
+        item.setContent(readString());
+      }
+      if ((flags & GUID) != 0) {
+        item.setGuid(readString());
+      }
+
+      final int thumbnailCount = readInt();
+      for (int i = 0; i < thumbnailCount; i++) {
+        final android.net.Uri url = readUri();
+        final int height = readSigned();
+        final int width = readSigned();
+        item.addThumbnail(new MediaThumbnail(url, height, width));
+      }
+
+      if ((flags & ENCLOSURE) != 0) {
+        final android.net.Uri url = readUri();
+        final int length = readSigned();
+        item.setEnclosure(new MediaEnclosure(url, length, readShared()));
+      }
+      return item;
+    }
+
+    void readBase(RSSBase base, int flags) throws IOException {
+      if ((flags & TITLE) != 0) {
+        base.setTitle(readString());
+      }
+      if ((flags & LINK) != 0) {
+        base.setLink(readUri());
+      }
+      if ((flags & DESCRIPTION) != 0) {
+        base.setDescription(readString());
+      }
+      final int categoryCount = readInt();
+      for (int i = 0; i < categoryCount; i++) {
+        base.addCategory(readShared());
+      }
+      if ((flags & PUB_DATE) != 0) {
+        base.setPubDate(readDate());
+      }
+    }
+
+    android.net.Uri readUri() throws IOException {
+      final String origin = readShared();
+      final String rest = readString();
+      return android.net.Uri.parse(origin.length() == 0 ? rest : origin.concat(rest));
+    }
+
+    Date readDate() throws IOException {
+      date += readSignedLong();
+      return new Date(date);
+    }
+
+    String readShared() throws IOException {
+      final int reference = readInt();
+      if (reference != NEW_STRING) {
+        return table.get(reference - 1);
+      }
+
+      final String value = readString();
+      table.add(value);
+      return value;
+    }
+
+    String readString() throws IOException {
+      final int length = readInt();
+      if (length > end - position) {
+        throw new IOException("Corrupt string length " + length);
+      }
+
+      final String value = new String(buffer, position, length, UTF8);
+      position += length;
+      return value;
+    }
+
+    int readSigned() throws IOException {
+      return (int) readSignedLong();
+    }
+
+    long readSignedLong() throws IOException {
+      final long value = readVarint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a non-negative integer.
+     */
+    int readInt() throws IOException {
+      final long value = readVarint();
+      if (value < 0 || value > Integer.MAX_VALUE) {
+        throw new IOException("Corrupt integer " + value);
+      }
+      return (int) value;
+    }
+
+    long readVarint() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        final byte b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IOException("Corrupt variable-length integer");
+    }
+
+    byte readByte() throws IOException {
+      if (position >= end) {
+        throw new IOException("Truncated RSS feed encoding");
+      }
+      return buffer[position++];
+    }
+
+  }
+
+}
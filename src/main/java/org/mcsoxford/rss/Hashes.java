@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Internal helper class to compute compact, stable identities of strings.
+ *
+ * @author Mr Horn
+ */
+final class Hashes {
+
+  /* Hide constructor */
+  private Hashes() {}
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * Returns the 64-bit FNV-1a hash of the UTF-16 code units of the string,
+   * which is stable across JVMs and never zero for a non-null string. Zero is
+   * returned for {@code null}.
+   */
+  static long hash64(String value) {
+    if (value == null) {
+      return 0L;
+    }
+
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      hash ^= c & 0xFF;
+      hash *= FNV_PRIME;
+      hash ^= c >>> 8;
+      hash *= FNV_PRIME;
+    }
+    return hash == 0L ? 1L : hash;
+  }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
+
+import org.mcsoxford.rss.RSSLoader.RSSFuture;
+
+/**
+ * Internal per-host limits on the RSS feed loads of an {@link RSSLoader}.
+ * Each host has a token bucket bounding its request rate and a counter
+ * bounding its concurrent loads. A load whose host is at its limit is parked
+ * instead of blocking the caller, and parked loads are resumed in
+ * round-robin order across hosts. This class is thread-safe.
+ *
+ * @author Mr Horn
+ */
+final class HostThrottle {
+
+  private final int maxConcurrent;
+  private final double permitsPerMilli;
+  private final int burst;
+
+  private final Map<String, Host> hosts = new HashMap<String, Host>();
+
+  /**
+   * Hosts with parked loads in the order in which they are served next.
+   */
+  private final LinkedList<Host> rotation = new LinkedList<Host>();
+
+  /**
+   * Total number of parked loads.
+   */
+  private int parked;
+
+  HostThrottle(RSSConfig config) {
+    this.maxConcurrent = config.hostConcurrency;
+    this.permitsPerMilli = config.hostRequestsPerSecond / 1000;
+    this.burst = config.hostBurst;
+  }
+
+  /**
+   * Returns {@code true} if the configuration limits hosts at all.
+   */
+  static boolean isLimited(RSSConfig config) {
+    return config.hostConcurrency > 0 || config.hostRequestsPerSecond > 0;
+  }
+
+  /**
+   * Returns the lower-case host name of the URI, or the URI itself if it
+   * cannot be parsed so that such loads fail on their own.
+   */
+  static String host(String uri) {
+    try {
+      final String host = URI.create(uri).getHost();
+      return host == null ? uri : host.toLowerCase(Locale.ENGLISH);
+    } catch (IllegalArgumentException e) {
+      return uri;
+    }
+  }
+
+  /**
+   * Starts the load if its host is within its limits and has no parked loads
+   * which would be overtaken. Otherwise, the load is parked.
+   *
+   * @return {@code true} if the load may start, {@code false} if it has been
+   *         parked
+   */
+  synchronized boolean acquire(RSSFuture future, long now) {
+    future.host = host(future.uri);
+    Host host = hosts.get(future.host);
+    if (host == null) {
+      host = new Host(future.host, burst, now);
+      hosts.put(host.name, host);
+    }
+
+    if (host.parked.isEmpty() && host.isReady(now)) {
+      host.start();
+      return true;
+    }
+
+    if (host.parked.isEmpty()) {
+      rotation.add(host);
+    }
+    host.parked.add(future);
+    parked++;
+    return false;
+  }
+
+  /**
+   * Starts and returns a parked load whose host is within its limits, or
+   * returns {@code null} if there is none. Hosts take turns.
+   */
+  synchronized RSSFuture poll(long now) {
+    for (int i = rotation.size(); i > 0; i--) {
+      final Host host = rotation.removeFirst();
+      if (host.isReady(now)) {
+        final RSSFuture future = host.parked.removeFirst();
+        parked--;
+        if (!host.parked.isEmpty()) {
+          rotation.addLast(host);
+        }
+        host.start();
+        return future;
+      }
+      rotation.addLast(host);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of milliseconds until a parked load may start because
+   * its host has regained a token, or {@link Long#MAX_VALUE} if every parked
+   * load waits for another load of its host to finish instead.
+   */
+  synchronized long delay(long now) {
+    long delay = Long.MAX_VALUE;
+    for (Host host : rotation) {
+      if (maxConcurrent == 0 || host.active < maxConcurrent) {
+        delay = Math.min(delay, host.delay(now));
+      }
+    }
+    return delay;
+  }
+
+  /**
+   * Waits until a parked load may start and returns it after starting it, or
+   * returns {@code null} once no loads are parked.
+   */
+  synchronized RSSFuture await() throws InterruptedException {
+    while (parked > 0) {
+      final long now = System.currentTimeMillis();
+      final RSSFuture future = poll(now);
+      if (future != null) {
+        return future;
+      }
+
+      final long delay = delay(now);
+      wait(delay == Long.MAX_VALUE ? 0 : delay);
+    }
+    return null;
+  }
+
+  /**
+   * Removes a parked load, e.g. because it has been cancelled.
+   *
+   * @return {@code true} if the load was parked
+   */
+  synchronized boolean remove(RSSFuture future) {
+    final Host host = future.host == null ? null : hosts.get(future.host);
+    if (host == null || !host.parked.remove(future)) {
+      return false;
+    }
+
+    parked--;
+    if (host.parked.isEmpty()) {
+      rotation.remove(host);
+    }
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Finishes a load which has been started.
+   *
+   * @return {@code true} if loads are parked which might start now
+   */
+  synchronized boolean release(RSSFuture future) {
+    final Host host = hosts.get(future.host);
+    host.active--;
+    if (host.active == 0 && host.parked.isEmpty()
+        && host.isFull(System.currentTimeMillis())) {
+      // forget idle hosts whose bucket is full again
+      hosts.remove(host.name);
+    }
+
+    notifyAll();
+    return parked > 0;
+  }
+
+  private final class Host {
+
+    final String name;
+    final LinkedList<RSSFuture> parked = new LinkedList<RSSFuture>();
+
+    int active;
+    double tokens;
+    long refilled;
+
+    Host(String name, int tokens, long now) {
+      this.name = name;
+      this.tokens = tokens;
+      this.refilled = now;
+    }
+
+    boolean isReady(long now) {
+      return (maxConcurrent == 0 || active < maxConcurrent) && delay(now) == 0;
+    }
+
+    /**
+     * Returns the number of milliseconds until a token is available.
+     */
+    long delay(long now) {
+      if (permitsPerMilli == 0) {
+        return 0;
+      }
+
+      if (now > refilled) {
+        tokens = Math.min(burst, tokens + (now - refilled) * permitsPerMilli);
+        refilled = now;
+      }
+      return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerMilli);
+    }
+
+    boolean isFull(long now) {
+      return delay(now) == 0 && (permitsPerMilli == 0 || tokens >= burst);
+    }
+
+    void start() {
+      active++;
+      if (permitsPerMilli > 0) {
+        tokens--;
+      }
+    }
+
+  }
+
+}
@@ -23,17 +23,42 @@ package org.mcsoxford.rss;
  */
 public final class MediaEnclosure {
 
-    private final android.net.Uri url;
+    private android.net.Uri url;
     private final int length;
     private final String mimeType;
 
+    /**
+     * Raw URL until {@link #getUrl()} is first called with lazy conversion,
+     * or {@code null} once the URL has been converted.
+     */
+    private volatile String rawUrl;
+
     /**
      * Returns the URL of the enclosure. The return value is never {@code null}.
      */
     public android.net.Uri getUrl() {
+        if (rawUrl != null) {
+            convertUrl();
+        }
         return url;
     }
 
+    private synchronized void convertUrl() {
+        final String raw = rawUrl;
+        if (raw != null) {
+            url = android.net.Uri.parse(raw);
+            rawUrl = null;
+        }
+    }
+
+    /**
+     * Returns the URL as a string without converting a raw URL.
+     */
+    String getUrlString() {
+        final String raw = rawUrl;
+        return raw == null ? url.toString() : raw;
+    }
+
     /**
      * Returns the length of the enclosure.
      */
@@ -58,4 +83,13 @@ public final class MediaEnclosure {
         this.mimeType = mimeType;
     }
 
+    /**
+     * Internal constructor for RSSHandler with lazy conversion
+     */
+    MediaEnclosure(String url, int length, String mimeType) {
+        this.rawUrl = url;
+        this.length = length;
+        this.mimeType = mimeType;
+    }
+
 }
@@ -24,18 +24,35 @@ package org.mcsoxford.rss;
  */
 public final class MediaThumbnail {
 
-  private final android.net.Uri url;
+  private android.net.Uri url;
   private final int height;
   private final int width;
 
+  /**
+   * Raw URL until {@link #getUrl()} is first called with lazy conversion, or
+   * {@code null} once the URL has been converted.
+   */
+  private volatile String rawUrl;
+
   /**
    * Returns the URL of the thumbnail.
    * The return value is never {@code null}.
    */
   public android.net.Uri getUrl() {
+    if (rawUrl != null) {
+      convertUrl();
+    }
     return url;
   }
 
+  private synchronized void convertUrl() {
+    final String raw = rawUrl;
+    if (raw != null) {
+      url = android.net.Uri.parse(raw);
+      rawUrl = null;
+    }
+  }
+
   /**
    * Returns the thumbnail's height or {@code -1} if unspecified.
    */
@@ -57,11 +74,19 @@ public final class MediaThumbnail {
     this.width = width;
   }
 
+  /* Internal constructor for RSSHandler with lazy conversion */
+  MediaThumbnail(String url, int height, int width) {
+    this.rawUrl = url;
+    this.height = height;
+    this.width = width;
+  }
+
   /**
    * Returns the thumbnail's URL as a string.
    */
   public String toString() {
-    return url.toString();
+    final String raw = rawUrl;
+    return raw == null ? url.toString() : raw;
   }
 
   /**
@@ -69,7 +94,7 @@ public final class MediaThumbnail {
    */
   @Override
   public int hashCode() {
-    return url.hashCode();
+    return getUrl().hashCode();
   }
 
   /**
@@ -83,7 +108,7 @@ public final class MediaThumbnail {
       final MediaThumbnail other = (MediaThumbnail) (object);
 
       /* other is not null */
-      return url.equals(other.url);
+      return getUrl().equals(other.getUrl());
     } else {
       return false;
     }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Internal estimate of how often one RSS feed publishes new RSS items. The
+ * time between the &lt;pubDate&gt; of consecutive RSS items is averaged with
+ * an exponentially weighted moving average, so that recent changes of the
+ * publish rate take effect after a few RSS items. This class is thread-safe.
+ *
+ * @author Mr Horn
+ */
+final class PublishRate {
+
+  /**
+   * Weight of the latest time between RSS items in the moving average.
+   */
+  private static final double ALPHA = 0.3;
+
+  /**
+   * Most recent &lt;pubDate&gt; in milliseconds, or zero if none is known.
+   */
+  private long newest;
+
+  /**
+   * Moving average of the milliseconds between RSS items.
+   */
+  private double average;
+
+  /**
+   * Number of times between RSS items which have been averaged.
+   */
+  private int samples;
+
+  /**
+   * Number of consecutive refreshes which found no new RSS items.
+   */
+  private int idle;
+
+  /**
+   * Updates the estimate with the RSS items which have been published since
+   * the previous update. The RSS feed is {@code null} if it has not been
+   * modified or failed to load, which counts as a refresh without new RSS
+   * items. RSS feeds whose RSS items have no &lt;pubDate&gt; never count as
+   * idle since it cannot be told whether they changed.
+   */
+  synchronized void update(RSSFeed feed) {
+    if (feed == null) {
+      idle++;
+      return;
+    }
+
+    boolean dated = false;
+    final List<Long> dates = new ArrayList<Long>();
+    for (RSSItem item : feed.getItems()) {
+      final Date date = item.getPubDate();
+      if (date != null) {
+        dated = true;
+        if (date.getTime() > newest) {
+          dates.add(date.getTime());
+        }
+      }
+    }
+
+    if (dates.isEmpty()) {
+      idle = dated ? idle + 1 : 0;
+      return;
+    }
+
+    Collections.sort(dates);
+    long previous = newest;
+    for (long date : dates) {
+      if (previous != 0L) {
+        final long gap = date - previous;
+        average = samples++ == 0 ? gap : ALPHA * gap + (1 - ALPHA) * average;
+      }
+      previous = date;
+    }
+    newest = previous;
+    idle = 0;
+  }
+
+  /**
+   * Returns the average number of milliseconds between RSS items, or zero if
+   * it is not known yet.
+   */
+  synchronized long average() {
+    return samples == 0 ? 0L : (long) average;
+  }
+
+  /**
+   * Returns the number of consecutive refreshes which found no new RSS items.
+   */
+  synchronized int idle() {
+    return idle;
+  }
+
+}
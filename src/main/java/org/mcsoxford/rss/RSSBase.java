@@ -31,6 +31,14 @@ abstract class RSSBase {
   private java.util.List<String> categories;
   private java.util.Date pubdate;
 
+  /*
+   * With lazy conversion, the raw strings are kept until the link or
+   * publication date is first read. Reading a raw string as null guarantees
+   * that the converted value is visible.
+   */
+  private volatile String rawLink;
+  private volatile String rawPubDate;
+
   /**
    * Specify initial capacity for the List which contains the category names.
    */
@@ -48,9 +56,32 @@ abstract class RSSBase {
   }
 
   public android.net.Uri getLink() {
+    if (rawLink != null) {
+      convertLink();
+    }
     return link;
   }
 
+  private synchronized void convertLink() {
+    final String raw = rawLink;
+    if (raw != null) {
+      link = android.net.Uri.parse(raw);
+      rawLink = null;
+    }
+  }
+
+  /**
+   * Returns the link as a string without converting a raw link, or
+   * {@code null} if there is no link.
+   */
+  String getLinkString() {
+    final String raw = rawLink;
+    if (raw != null) {
+      return raw;
+    }
+    return link == null ? null : link.toString();
+  }
+
   public java.util.List<String> getCategories() {
     if (categories == null) {
       return java.util.Collections.emptyList();
@@ -59,16 +90,40 @@ abstract class RSSBase {
     return java.util.Collections.unmodifiableList(categories);
   }
 
+  /**
+   * Returns the publication date, or {@code null} if there is none. With
+   * lazy conversion, an invalid date yields {@code null} too.
+   */
   public java.util.Date getPubDate() {
+    if (rawPubDate != null) {
+      convertPubDate();
+    }
     return pubdate;
   }
 
+  private synchronized void convertPubDate() {
+    final String raw = rawPubDate;
+    if (raw != null) {
+      pubdate = Dates.parseRfc822(raw, /* lenient */true);
+      rawPubDate = null;
+    }
+  }
+
   void setTitle(String title) {
     this.title = title;
   }
 
   void setLink(android.net.Uri link) {
     this.link = link;
+    this.rawLink = null;
+  }
+
+  /**
+   * Sets the link which is converted when {@link #getLink()} is first called.
+   */
+  void setRawLink(String link) {
+    this.link = null;
+    this.rawLink = link;
   }
 
   void setDescription(String description) {
@@ -85,6 +140,16 @@ abstract class RSSBase {
 
   void setPubDate(java.util.Date pubdate) {
     this.pubdate = pubdate;
+    this.rawPubDate = null;
+  }
+
+  /**
+   * Sets the RFC 822 publication date which is parsed when
+   * {@link #getPubDate()} is first called.
+   */
+  void setRawPubDate(String pubdate) {
+    this.pubdate = null;
+    this.rawPubDate = pubdate;
   }
 
   /**
@@ -99,6 +164,7 @@ abstract class RSSBase {
    */
   @Override
   public int hashCode() {
+    final android.net.Uri link = getLink();
     if (link == null) {
       return 0;
     }
@@ -116,12 +182,13 @@ abstract class RSSBase {
     } else if (object instanceof RSSBase) {
       /* other is never null */
       final RSSBase other = (RSSBase) (object);
+      final android.net.Uri link = getLink();
 
       if (link == null) {
-        return other.link == null;
+        return other.getLink() == null;
       }
 
-      return link.equals(other.link);
+      return link.equals(other.getLink());
     } else {
       return false;
     }
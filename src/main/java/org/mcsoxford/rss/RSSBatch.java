@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.mcsoxford.rss.RSSLoader.RSSFuture;
+
+/**
+ * Handle on a batch of RSS feeds which are loaded asynchronously by
+ * {@link RSSLoader#loadAll(java.util.Collection)}. The batch is done once
+ * every RSS feed has an {@link Outcome}. This class is thread-safe.
+ *
+ * <p>
+ * <b>Usage Example</b>
+ *
+ * <pre>
+ * {@code
+ *  RSSBatch batch = loader.loadAll(uris, 30, TimeUnit.SECONDS);
+ *  batch.await();
+ *  for (String uri : batch.getURIs()) {
+ *    if (batch.getOutcome(uri) == RSSBatch.Outcome.LOADED) {
+ *      use(batch.getFeed(uri));
+ *    }
+ *  }}
+ * </pre>
+ *
+ * @author Mr Horn
+ */
+public final class RSSBatch {
+
+  /**
+   * Final state of one RSS feed in a batch.
+   */
+  public enum Outcome {
+
+    /** The RSS feed has been loaded successfully */
+    LOADED,
+
+    /** The RSS feed could not be loaded or scheduled for loading */
+    FAILED,
+
+    /**
+     * The batch timed out before the RSS feed was loaded, or the load missed
+     * one of its deadlines
+     */
+    TIMED_OUT,
+
+    /** The load of the RSS feed has been cancelled */
+    CANCELLED
+  }
+
+  private final Map<String, RSSFuture> futures;
+  private final Map<String, Outcome> outcomes;
+  private final Map<String, Exception> causes;
+  private int pending;
+  private Runnable done;
+
+  RSSBatch(Map<String, RSSFuture> futures) {
+    this.futures = futures;
+    this.outcomes = new LinkedHashMap<String, Outcome>();
+    this.causes = new LinkedHashMap<String, Exception>();
+    this.pending = futures.size();
+  }
+
+  /**
+   * Records the outcome of each load once it completes. Must be called once,
+   * after construction.
+   */
+  void start() {
+    for (final Map.Entry<String, RSSFuture> entry : futures.entrySet()) {
+      final RSSFuture future = entry.getValue();
+      if (future == null) {
+        complete(entry.getKey(), Outcome.FAILED, new RejectedExecutionException(
+            "RSS feed could not be scheduled for loading"));
+        continue;
+      }
+
+      future.whenCompleted(new Runnable() {
+        @Override
+        public void run() {
+          completed(entry.getKey(), future);
+        }
+      });
+    }
+  }
+
+  private void completed(String uri, RSSFuture future) {
+    if (future.isCancelled()) {
+      complete(uri, Outcome.CANCELLED, null);
+      return;
+    }
+
+    try {
+      future.get();
+      complete(uri, Outcome.LOADED, null);
+    } catch (ExecutionException e) {
+      final Exception cause = (Exception) e.getCause();
+      complete(uri, cause instanceof RSSTimeoutException ? Outcome.TIMED_OUT
+          : Outcome.FAILED, cause);
+    } catch (InterruptedException e) {
+      // the load has completed, so the result is available without waiting
+      Thread.currentThread().interrupt();
+      complete(uri, Outcome.FAILED, e);
+    }
+  }
+
+  private synchronized void complete(String uri, Outcome outcome, Exception cause) {
+    if (outcomes.containsKey(uri)) {
+      return;
+    }
+
+    outcomes.put(uri, outcome);
+    if (cause != null) {
+      causes.put(uri, cause);
+    }
+
+    if (--pending == 0) {
+      // before waiters wake up, so that they observe the effects of the hook
+      if (done != null) {
+        done.run();
+        done = null;
+      }
+      notifyAll();
+    }
+  }
+
+  /**
+   * Runs the hook once every RSS feed in this batch has an outcome, or
+   * immediately if the batch is done already. The hook may be run whilst
+   * holding the lock of this batch, so it must not block. At most one hook
+   * can be registered.
+   */
+  synchronized void whenDone(Runnable hook) {
+    if (pending == 0) {
+      hook.run();
+    } else {
+      done = hook;
+    }
+  }
+
+  /**
+   * Marks every RSS feed which has no outcome yet as timed out and cancels
+   * its load, aborting it if it is in progress.
+   */
+  void expire() {
+    finish(Outcome.TIMED_OUT);
+  }
+
+  /**
+   * Cancels the loads which have not completed yet, aborting those in
+   * progress. Their RSS feeds are reported as {@link Outcome#CANCELLED}, and
+   * the batch is done.
+   */
+  public void cancel() {
+    finish(Outcome.CANCELLED);
+  }
+
+  private void finish(Outcome outcome) {
+    for (Map.Entry<String, RSSFuture> entry : futures.entrySet()) {
+      complete(entry.getKey(), outcome, null);
+      if (entry.getValue() != null) {
+        entry.getValue().cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} once every RSS feed in this batch has an outcome.
+   */
+  public synchronized boolean isDone() {
+    return pending == 0;
+  }
+
+  /**
+   * Waits until every RSS feed in this batch has an outcome.
+   *
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  public synchronized void await() throws InterruptedException {
+    while (pending > 0) {
+      wait();
+    }
+  }
+
+  /**
+   * Waits until every RSS feed in this batch has an outcome or the timeout
+   * elapses, whichever happens first.
+   *
+   * @return {@code true} if the batch is done, {@code false} if the timeout
+   *         elapsed before
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  public synchronized boolean await(long timeout, TimeUnit unit)
+      throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+    while (pending > 0) {
+      final long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return false;
+      }
+      wait(remaining);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the distinct RSS feed URIs of this batch in the order in which
+   * they were passed.
+   */
+  public Set<String> getURIs() {
+    return Collections.unmodifiableSet(futures.keySet());
+  }
+
+  /**
+   * Returns the outcome of the specified RSS feed URI, or {@code null} if it
+   * has none yet.
+   */
+  public synchronized Outcome getOutcome(String uri) {
+    checkURI(uri);
+    return outcomes.get(uri);
+  }
+
+  /**
+   * Returns the specified RSS feed if it has been loaded successfully, or
+   * {@code null} otherwise.
+   */
+  public RSSFeed getFeed(String uri) {
+    if (getOutcome(uri) != Outcome.LOADED) {
+      return null;
+    }
+
+    try {
+      return futures.get(uri).get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * Returns the error of the specified RSS feed URI if its outcome is
+   * {@link Outcome#FAILED}, or if it is {@link Outcome#TIMED_OUT} because its
+   * load missed a deadline. Returns {@code null} otherwise.
+   */
+  public synchronized Exception getCause(String uri) {
+    checkURI(uri);
+    return causes.get(uri);
+  }
+
+  /**
+   * Returns the successfully loaded RSS feeds of this batch by URI.
+   */
+  public Map<String, RSSFeed> getFeeds() {
+    final Map<String, RSSFeed> feeds = new LinkedHashMap<String, RSSFeed>();
+    for (String uri : futures.keySet()) {
+      final RSSFeed feed = getFeed(uri);
+      if (feed != null) {
+        feeds.put(uri, feed);
+      }
+    }
+    return feeds;
+  }
+
+  private void checkURI(String uri) {
+    if (!futures.containsKey(uri)) {
+      throw new IllegalArgumentException("RSS feed URI is not part of this batch: " + uri);
+    }
+  }
+
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RSS reader which keeps recently loaded RSS feeds in memory. A cached RSS
+ * feed is returned without any network access until it expires. RSS feeds
+ * expire after the number of minutes given by their &lt;ttl&gt; element,
+ * bounded by a configurable floor and ceiling. RSS feeds without a
+ * &lt;ttl&gt; element expire after the floor.
+ * <p>
+ * Once the cache is full, the least recently used RSS feed is evicted. An
+ * expired RSS feed is revalidated with a conditional HTTP GET request so that
+ * it is not downloaded again unless it has changed.
+ * <p>
+ * An optional {@link RSSDiskCache} serves as a second level: RSS feeds which
+ * are not in memory are looked up on disk before any HTTP request is sent,
+ * and every retrieved RSS feed is written to disk together with its HTTP
+ * cache validators. Disk entries are read lazily on demand, or in bulk with
+ * {@link #preload()}.
+ * <p>
+ * Cached {@link RSSFeed} objects are shared between all callers. This class
+ * is thread-safe.
+ *
+ * <p>
+ * <b>Usage Example</b>
+ *
+ * <pre>
+ * RSSReader reader = new RSSCachingReader(new RSSReader(), 100);
+ * RSSFeed feed = reader.load(&quot;http://example.com/rss&quot;);
+ * </pre>
+ *
+ * @author Mr Horn
+ */
+public class RSSCachingReader extends RSSReader {
+
+  /**
+   * Default minimum number of milliseconds for which RSS feeds are cached.
+   */
+  private static final long DEFAULT_MIN_TTL = TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * Default maximum number of milliseconds for which RSS feeds are cached.
+   */
+  private static final long DEFAULT_MAX_TTL = TimeUnit.HOURS.toMillis(24);
+
+  /**
+   * Reader which loads RSS feeds that are not cached.
+   */
+  private final RSSReader delegate;
+
+  /**
+   * Least recently used RSS feeds by URI. Guarded by itself.
+   */
+  private final Map<String, Entry> entries;
+
+  /**
+   * Second-level cache, or {@code null} if none.
+   */
+  private final RSSDiskCache disk;
+
+  private final long minTTL;
+  private final long maxTTL;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Instantiate a cache of at most {@code capacity} RSS feeds loaded by the
+   * given reader. RSS feeds are cached for at least 5 minutes and at most 24
+   * hours.
+   *
+   * @param delegate reader which loads RSS feeds that are not cached
+   * @param capacity maximum number of cached RSS feeds
+   */
+  public RSSCachingReader(RSSReader delegate, int capacity) {
+    this(delegate, capacity, DEFAULT_MIN_TTL, DEFAULT_MAX_TTL);
+  }
+
+  /**
+   * Instantiate a cache of at most {@code capacity} RSS feeds loaded by the
+   * given reader.
+   *
+   * @param delegate reader which loads RSS feeds that are not cached
+   * @param capacity maximum number of cached RSS feeds
+   * @param minTTL minimum number of milliseconds for which an RSS feed is
+   *          cached, also used for RSS feeds without a &lt;ttl&gt; element
+   * @param maxTTL maximum number of milliseconds for which an RSS feed is
+   *          cached
+   */
+  public RSSCachingReader(RSSReader delegate, int capacity, long minTTL,
+      long maxTTL) {
+    this(delegate, capacity, minTTL, maxTTL, null);
+  }
+
+  /**
+   * Instantiate a cache of at most {@code capacity} RSS feeds in memory which
+   * are also stored on disk.
+   *
+   * @param delegate reader which loads RSS feeds that are not cached
+   * @param capacity maximum number of RSS feeds cached in memory
+   * @param minTTL minimum number of milliseconds for which an RSS feed is
+   *          cached, also used for RSS feeds without a &lt;ttl&gt; element
+   * @param maxTTL maximum number of milliseconds for which an RSS feed is
+   *          cached
+   * @param disk second-level cache, or {@code null} if none
+   */
+  public RSSCachingReader(RSSReader delegate, final int capacity, long minTTL,
+      long maxTTL, RSSDiskCache disk) {
+    super(delegate);
+
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    } else if (minTTL < 0 || maxTTL < minTTL) {
+      throw new IllegalArgumentException("TTL bounds must satisfy 0 <= min <= max.");
+    }
+
+    this.delegate = delegate;
+    this.disk = disk;
+    this.minTTL = minTTL;
+    this.maxTTL = maxTTL;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, /* access order */true) {
+
+      /**
+       * Unsupported serialization
+       */
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > capacity;
+      }
+
+    };
+  }
+
+  /**
+   * Returns the cached RSS feed unless it has expired. Otherwise the RSS feed
+   * is loaded and cached.
+   */
+  @Override
+  public RSSFeed load(String uri) throws RSSReaderException {
+    final Entry entry = get(uri);
+    if (entry != null && entry.isFresh(now())) {
+      hits.incrementAndGet();
+      return entry.feed;
+    }
+
+    misses.incrementAndGet();
+    if (entry == null) {
+      // keep the HTTP cache validators to revalidate the RSS feed once expired
+      return put(uri, delegate.load(uri, /* conditional */false, /* revalidate */true,
+          /* abort */null));
+    }
+
+    // Revalidate the expired RSS feed
+    try {
+      return put(uri, delegate.loadIfModified(uri));
+    } catch (RSSNotModifiedException e) {
+      return touch(uri, entry.feed);
+    }
+  }
+
+  /**
+   * Throws {@link RSSNotModifiedException} if the cached RSS feed has not
+   * expired. Otherwise a conditional HTTP GET request is sent and the
+   * retrieved RSS feed is cached.
+   */
+  @Override
+  public RSSFeed loadIfModified(String uri) throws RSSReaderException {
+    final Entry entry = get(uri);
+    if (entry != null && entry.isFresh(now())) {
+      hits.incrementAndGet();
+      throw new RSSNotModifiedException("Cached");
+    }
+
+    misses.incrementAndGet();
+    try {
+      return put(uri, delegate.loadIfModified(uri));
+    } catch (RSSNotModifiedException e) {
+      if (entry != null) {
+        touch(uri, entry.feed);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Reads all RSS feeds stored on disk into memory, up to the capacity of
+   * this cache. Expired RSS feeds are revalidated when they are next loaded.
+   *
+   * @return number of RSS feeds read from disk
+   */
+  public int preload() {
+    if (disk == null) {
+      return 0;
+    }
+
+    final java.util.List<RSSDiskCache.Entry> stored = disk.getAll();
+    for (RSSDiskCache.Entry entry : stored) {
+      restore(entry);
+    }
+    return stored.size();
+  }
+
+  /**
+   * Removes the specified RSS feed from the cache, including the disk cache.
+   */
+  public void invalidate(String uri) {
+    synchronized (entries) {
+      entries.remove(uri);
+    }
+    if (disk != null) {
+      disk.remove(uri);
+    }
+  }
+
+  /**
+   * Returns the number of loads which have been answered from the cache.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of loads which have required an HTTP request.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of cached RSS feeds, including expired ones.
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Releases the resources of the decorated reader.
+   */
+  @Override
+  public void close() {
+    synchronized (entries) {
+      entries.clear();
+    }
+    delegate.close();
+  }
+
+  /**
+   * Returns the cached RSS feed of the URI from memory or, failing that, from
+   * disk. Returns {@code null} if the RSS feed is not cached.
+   */
+  private Entry get(String uri) {
+    synchronized (entries) {
+      final Entry entry = entries.get(uri);
+      if (entry != null || disk == null) {
+        return entry;
+      }
+    }
+
+    final RSSDiskCache.Entry stored = disk.get(uri);
+    return stored == null ? null : restore(stored);
+  }
+
+  /**
+   * Caches an RSS feed read from disk and restores its HTTP cache validators
+   * so that it can be revalidated once it expires.
+   */
+  private Entry restore(RSSDiskCache.Entry stored) {
+    if (getValidators(stored.uri) == null) {
+      setValidators(stored.uri, stored.validators);
+    }
+
+    final Entry entry = new Entry(stored.feed, stored.fetched + ttl(stored.feed));
+    synchronized (entries) {
+      entries.put(stored.uri, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Caches the RSS feed until its TTL, clamped to the configured bounds, has
+   * elapsed. The RSS feed is also written to disk, if any.
+   */
+  private RSSFeed put(String uri, RSSFeed feed) {
+    final long fetched = now();
+    final Entry entry = new Entry(feed, fetched + ttl(feed));
+    synchronized (entries) {
+      entries.put(uri, entry);
+    }
+
+    if (disk != null) {
+      disk.put(uri, feed, getValidators(uri), fetched);
+    }
+    return feed;
+  }
+
+  /**
+   * Caches the revalidated RSS feed for another TTL. Only the time at which
+   * it was retrieved is updated on disk, unless the file has gone missing.
+   */
+  private RSSFeed touch(String uri, RSSFeed feed) {
+    final long fetched = now();
+    final Entry entry = new Entry(feed, fetched + ttl(feed));
+    synchronized (entries) {
+      entries.put(uri, entry);
+    }
+
+    if (disk != null && !disk.touch(uri, fetched)) {
+      disk.put(uri, feed, getValidators(uri), fetched);
+    }
+    return feed;
+  }
+
+  /**
+   * Returns the number of milliseconds for which the RSS feed is cached.
+   */
+  private long ttl(RSSFeed feed) {
+    final Integer minutes = feed.getTTL();
+    final long ttl = minutes == null ? minTTL : TimeUnit.MINUTES.toMillis(minutes);
+    return Math.max(minTTL, Math.min(maxTTL, ttl));
+  }
+
+  /**
+   * Returns the current time in milliseconds.
+   */
+  long now() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Immutable cached RSS feed and its expiry time.
+   */
+  private static final class Entry {
+
+    final RSSFeed feed;
+    final long expires;
+
+    Entry(RSSFeed feed, long expires) {
+      this.feed = feed;
+      this.expires = expires;
+    }
+
+    boolean isFresh(long now) {
+      return now < expires;
+    }
+
+  }
+
+}
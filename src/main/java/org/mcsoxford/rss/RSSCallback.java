@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Callback which receives the result of an asynchronous RSS feed load. It is
+ * registered with {@link RSSLoadFuture#addCallback(RSSCallback)}. Exactly one
+ * of its methods is invoked once per registration, either on the thread
+ * which completed the load or, if the load has completed already, on the
+ * registering thread. Implementations should return quickly.
+ * 
+ * @author Mr Horn
+ */
+public interface RSSCallback {
+
+  /**
+   * Receives the successfully loaded RSS feed.
+   * 
+   * @param uri RSS feed URI which has been loaded
+   * @param feed loaded RSS feed
+   */
+  void onLoaded(String uri, RSSFeed feed);
+
+  /**
+   * Receives the error of a failed load. If the load has been cancelled, the
+   * error is a {@link java.util.concurrent.CancellationException}.
+   * 
+   * @param uri RSS feed URI which could not be loaded
+   * @param cause error which caused the load to fail
+   */
+  void onFailed(String uri, Exception cause);
+
+}
@@ -19,7 +19,8 @@ package org.mcsoxford.rss;
 /**
  * Immutable data structure to configure the RSS parser and loader modules. On
  * large data sets, well-chosen configuration values can reduce memory
- * consumption and increase performance.
+ * consumption and increase performance. Optional settings are changed with
+ * the {@code with} methods, each of which returns a modified copy.
  * 
  * @author Mr Horn
  */
@@ -37,6 +38,155 @@ public final class RSSConfig {
    */
   final byte thumbnailAvg;
 
+  /*
+   * Optional settings are changed by the "with" methods, which construct a
+   * new configuration from a Builder, so that every field is final.
+   */
+
+  /**
+   * If {@code true}, invalid &lt;pubDate&gt; and &lt;lastBuildDate&gt; elements
+   * are ignored rather than aborting the parse with an {@link RSSFault}.
+   */
+  final boolean lenientDates;
+
+  /**
+   * If {@code true}, {@link RSSParser} keeps one XML reader and SAX handler per
+   * thread and reuses them across parses.
+   */
+  final boolean reuseParsers;
+
+  /**
+   * If {@code true}, links, publication dates and media URLs are kept as raw
+   * strings and only converted when they are first read.
+   */
+  final boolean lazyConversion;
+
+  /**
+   * Maximum number of RSS items to be parsed, or zero if unlimited.
+   */
+  final int maxItems;
+
+  /**
+   * RSS items published before this time in milliseconds since the epoch stop
+   * the parse, or {@link Long#MIN_VALUE} if there is no such cut-off.
+   */
+  final long minPubDate;
+
+  /**
+   * Maximum number of pooled HTTP connections in total.
+   */
+  final int maxConnections;
+
+  /**
+   * Maximum number of pooled HTTP connections to any one host.
+   */
+  final int maxConnectionsPerHost;
+
+  /**
+   * Milliseconds an idle persistent connection is kept alive unless the
+   * server asks for less.
+   */
+  final long keepAliveMillis;
+
+  /**
+   * Milliseconds after which idle pooled connections are closed, or zero if
+   * they are never closed.
+   */
+  final long idleTimeoutMillis;
+
+  /**
+   * Milliseconds to wait for a TCP connection to be established, or zero if
+   * infinite.
+   */
+  final int connectTimeoutMillis;
+
+  /**
+   * Milliseconds to wait for data on an established connection, or zero if
+   * infinite.
+   */
+  final int socketTimeoutMillis;
+
+  /**
+   * Milliseconds to wait for a free connection from the pool, or zero if
+   * infinite.
+   */
+  final long connectionRequestTimeoutMillis;
+
+  /**
+   * Milliseconds within which each request must establish its TCP
+   * connection, overriding the connect timeout of the HTTP client, or zero if
+   * the HTTP client's connect timeout applies.
+   */
+  final int connectDeadlineMillis;
+
+  /**
+   * Milliseconds from sending a request until the response headers must have
+   * arrived, or zero if unlimited.
+   */
+  final long firstByteTimeoutMillis;
+
+  /**
+   * Milliseconds from sending a request until the RSS feed must have been
+   * downloaded and parsed, or zero if unlimited.
+   */
+  final long totalTimeoutMillis;
+
+  /**
+   * Maximum number of RSS items per RSS feed which
+   * {@link RSSReader#loadNew(String)} remembers as seen.
+   */
+  final int seenCapacity;
+
+  /**
+   * Number of consecutive seen RSS items after which
+   * {@link RSSReader#loadNew(String)} stops parsing, or zero if it never
+   * stops early.
+   */
+  final int stopAfterSeen;
+
+  /**
+   * Minimum number of milliseconds between refreshes of a subscribed RSS
+   * feed, regardless of its &lt;ttl&gt; element.
+   */
+  final long minRefreshMillis;
+
+  /**
+   * Number of milliseconds between refreshes of a subscribed RSS feed which
+   * has no &lt;ttl&gt; element or which failed to load.
+   */
+  final long defaultRefreshMillis;
+
+  /**
+   * Maximum number of milliseconds between refreshes of a subscribed RSS
+   * feed, however rarely it publishes new RSS items.
+   */
+  final long maxRefreshMillis;
+
+  /**
+   * Maximum number of RSS feeds which {@link RSSLoader} loads concurrently
+   * from the same host, or zero if unlimited.
+   */
+  final int hostConcurrency;
+
+  /**
+   * Number of requests per second which {@link RSSLoader} sends to the same
+   * host on average, or zero if unlimited.
+   */
+  final double hostRequestsPerSecond;
+
+  /**
+   * Number of requests which {@link RSSLoader} may send to an idle host in
+   * quick succession before the average rate applies.
+   */
+  final int hostBurst;
+
+  /**
+   * Milliseconds during which {@link RSSLoader} shares a successfully loaded
+   * RSS feed with further loads of the same URI, or negative if loads are not
+   * coalesced.
+   */
+  final long coalesceMillis;
+
   /**
    * Instantiate an RSS configuration with the specified parameters.
    * 
@@ -46,17 +196,407 @@ public final class RSSConfig {
    *          elements in a typical RSS feed
    */
   public RSSConfig(byte categoryAvg, byte thumbnailAvg) {
-    this.categoryAvg = categoryAvg;
-    this.thumbnailAvg = thumbnailAvg;
+    this(new Builder(categoryAvg, thumbnailAvg));
   }
 
   /**
    * Instantiate an RSS configuration with default values.
    */
   public RSSConfig() {
-    this.categoryAvg = 3;
-    this.thumbnailAvg = 2;
+    this((byte) 3, (byte) 2);
   }
 
-}
+  /**
+   * Assign all settings of the specified builder.
+   */
+  private RSSConfig(Builder builder) {
+    this.categoryAvg = builder.categoryAvg;
+    this.thumbnailAvg = builder.thumbnailAvg;
+    this.lenientDates = builder.lenientDates;
+    this.reuseParsers = builder.reuseParsers;
+    this.lazyConversion = builder.lazyConversion;
+    this.maxItems = builder.maxItems;
+    this.minPubDate = builder.minPubDate;
+    this.maxConnections = builder.maxConnections;
+    this.maxConnectionsPerHost = builder.maxConnectionsPerHost;
+    this.keepAliveMillis = builder.keepAliveMillis;
+    this.idleTimeoutMillis = builder.idleTimeoutMillis;
+    this.connectTimeoutMillis = builder.connectTimeoutMillis;
+    this.socketTimeoutMillis = builder.socketTimeoutMillis;
+    this.connectionRequestTimeoutMillis = builder.connectionRequestTimeoutMillis;
+    this.connectDeadlineMillis = builder.connectDeadlineMillis;
+    this.firstByteTimeoutMillis = builder.firstByteTimeoutMillis;
+    this.totalTimeoutMillis = builder.totalTimeoutMillis;
+    this.seenCapacity = builder.seenCapacity;
+    this.stopAfterSeen = builder.stopAfterSeen;
+    this.minRefreshMillis = builder.minRefreshMillis;
+    this.defaultRefreshMillis = builder.defaultRefreshMillis;
+    this.maxRefreshMillis = builder.maxRefreshMillis;
+    this.hostConcurrency = builder.hostConcurrency;
+    this.hostRequestsPerSecond = builder.hostRequestsPerSecond;
+    this.hostBurst = builder.hostBurst;
+    this.coalesceMillis = builder.coalesceMillis;
+  }
+
+  /**
+   * Mutable settings from which the "with" methods construct a modified
+   * configuration. The field initializers are the default values.
+   */
+  private static final class Builder {
+
+    final byte categoryAvg;
+    final byte thumbnailAvg;
+    boolean lenientDates;
+    boolean reuseParsers;
+    boolean lazyConversion;
+    int maxItems;
+    long minPubDate = Long.MIN_VALUE;
+    int maxConnections = 20;
+    int maxConnectionsPerHost = 4;
+    long keepAliveMillis = 30 * 1000L;
+    long idleTimeoutMillis = 60 * 1000L;
+    int connectTimeoutMillis = 20 * 1000;
+    int socketTimeoutMillis = 60 * 1000;
+    long connectionRequestTimeoutMillis = 60 * 1000L;
+    int connectDeadlineMillis;
+    long firstByteTimeoutMillis;
+    long totalTimeoutMillis;
+    int seenCapacity = 1024;
+    int stopAfterSeen = 3;
+    long minRefreshMillis = 5 * 60 * 1000L;
+    long defaultRefreshMillis = 60 * 60 * 1000L;
+    long maxRefreshMillis = 24 * 60 * 60 * 1000L;
+    int hostConcurrency = 0;
+    double hostRequestsPerSecond = 0;
+    int hostBurst = 1;
+    long coalesceMillis = -1;
+
+    Builder(byte categoryAvg, byte thumbnailAvg) {
+      this.categoryAvg = categoryAvg;
+      this.thumbnailAvg = thumbnailAvg;
+    }
+
+    /**
+     * Copy all settings of the specified configuration.
+     */
+    Builder(RSSConfig config) {
+      this.categoryAvg = config.categoryAvg;
+      this.thumbnailAvg = config.thumbnailAvg;
+      this.lenientDates = config.lenientDates;
+      this.reuseParsers = config.reuseParsers;
+      this.lazyConversion = config.lazyConversion;
+      this.maxItems = config.maxItems;
+      this.minPubDate = config.minPubDate;
+      this.maxConnections = config.maxConnections;
+      this.maxConnectionsPerHost = config.maxConnectionsPerHost;
+      this.keepAliveMillis = config.keepAliveMillis;
+      this.idleTimeoutMillis = config.idleTimeoutMillis;
+      this.connectTimeoutMillis = config.connectTimeoutMillis;
+      this.socketTimeoutMillis = config.socketTimeoutMillis;
+      this.connectionRequestTimeoutMillis = config.connectionRequestTimeoutMillis;
+      this.connectDeadlineMillis = config.connectDeadlineMillis;
+      this.firstByteTimeoutMillis = config.firstByteTimeoutMillis;
+      this.totalTimeoutMillis = config.totalTimeoutMillis;
+      this.seenCapacity = config.seenCapacity;
+      this.stopAfterSeen = config.stopAfterSeen;
+      this.minRefreshMillis = config.minRefreshMillis;
+      this.defaultRefreshMillis = config.defaultRefreshMillis;
+      this.maxRefreshMillis = config.maxRefreshMillis;
+      this.hostConcurrency = config.hostConcurrency;
+      this.hostRequestsPerSecond = config.hostRequestsPerSecond;
+      this.hostBurst = config.hostBurst;
+      this.coalesceMillis = config.coalesceMillis;
+    }
+
+  }
+
+  /**
+   * Returns a copy of this configuration which determines how invalid dates
+   * are treated. In lenient mode, a date which cannot be parsed is left
+   * {@code null} so that one bad &lt;pubDate&gt; does not abort the whole
+   * feed. By default, dates are parsed strictly.
+   * 
+   * @param lenient {@code true} to ignore invalid dates, {@code false} to
+   *          throw an {@link RSSFault}
+   */
+  public RSSConfig withLenientDates(boolean lenient) {
+    final Builder copy = new Builder(this);
+    copy.lenientDates = lenient;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration which determines whether the XML
+   * parser infrastructure is reused. If enabled, each thread which calls
+   * {@link RSSParser#parse(java.io.InputStream)} creates its XML reader and SAX
+   * handler only once, so the per-feed setup cost becomes negligible when many
+   * small feeds are parsed. By default, every parse starts from scratch.
+   * 
+   * @param reuse {@code true} to reuse XML readers and SAX handlers per thread
+   */
+  public RSSConfig withParserReuse(boolean reuse) {
+    final Builder copy = new Builder(this);
+    copy.reuseParsers = reuse;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration which determines when the parser
+   * converts &lt;link&gt; and &lt;pubDate&gt; elements as well as the URLs
+   * of &lt;media:thumbnail&gt; and &lt;enclosure&gt; elements. With lazy
+   * conversion, the raw strings are kept and converted once when they are
+   * first read, so callers which only read titles do not pay for parsing
+   * dates and URIs. Since dates are not validated while parsing, invalid
+   * dates yield {@code null} regardless of
+   * {@link #withLenientDates(boolean)}. By default, values are converted
+   * while parsing.
+   * 
+   * @param lazy {@code true} to convert values on first access
+   */
+  public RSSConfig withLazyConversion(boolean lazy) {
+    final Builder copy = new Builder(this);
+    copy.lazyConversion = lazy;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration which limits the number of RSS items
+   * to be parsed. Once the limit is reached, the parser stops reading the
+   * feed and {@link RSSFeed#isTruncated()} returns {@code true}.
+   * 
+   * @param maxItems maximum number of RSS items, or zero if unlimited
+   */
+  public RSSConfig withMaxItems(int maxItems) {
+    if (maxItems < 0) {
+      throw new IllegalArgumentException("Maximum number of RSS items must not be negative.");
+    }
+
+    final Builder copy = new Builder(this);
+    copy.maxItems = maxItems;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration which only parses RSS items published
+   * at or after the specified date, for example the time of the last poll.
+   * Since RSS feeds list their newest items first, the parser stops reading
+   * the feed at the first RSS item whose &lt;pubDate&gt; is older. Items
+   * without a &lt;pubDate&gt; are always kept.
+   * 
+   * @param minPubDate oldest publication date of interest, or {@code null} if
+   *          there is no such cut-off
+   */
+  public RSSConfig withMinPubDate(java.util.Date minPubDate) {
+    final Builder copy = new Builder(this);
+    copy.minPubDate = minPubDate == null ? Long.MIN_VALUE : minPubDate.getTime();
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration which limits the number of pooled
+   * HTTP connections of an {@link RSSReader}. Connections to the same host
+   * are reused while they are kept alive. By default, at most 20 connections
+   * are open in total and at most 4 to any one host.
+   * 
+   * @param total maximum number of connections
+   * @param perHost maximum number of connections to any one host
+   */
+  public RSSConfig withConnectionLimits(int total, int perHost) {
+    if (total < 1 || perHost < 1) {
+      throw new IllegalArgumentException("Connection limits must be positive.");
+    }
+
+    final Builder copy = new Builder(this);
+    copy.maxConnections = total;
+    copy.maxConnectionsPerHost = perHost;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration which determines how long idle HTTP
+   * connections are kept for reuse. By default, connections are kept alive
+   * for 30 seconds unless the server asks for less, and connections which
+   * have been idle for 60 seconds are closed.
+   * 
+   * @param keepAlive maximum keep-alive duration in milliseconds
+   * @param idleTimeout idle duration in milliseconds after which pooled
+   *          connections are closed, or zero to never close them
+   */
+  public RSSConfig withKeepAlive(long keepAlive, long idleTimeout) {
+    if (keepAlive < 0 || idleTimeout < 0) {
+      throw new IllegalArgumentException("Durations must not be negative.");
+    }
+
+    final Builder copy = new Builder(this);
+    copy.keepAliveMillis = keepAlive;
+    copy.idleTimeoutMillis = idleTimeout;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration with the specified HTTP timeouts in
+   * milliseconds, each of which is infinite if zero. By default, connecting
+   * times out after 20 seconds, and both waiting for data and waiting for a
+   * pooled connection time out after 60 seconds.
+   * 
+   * @param connect timeout until a TCP connection is established
+   * @param socket timeout while waiting for data on a connection
+   * @param connectionRequest timeout while waiting for a free pooled
+   *          connection
+   */
+  public RSSConfig withTimeouts(int connect, int socket, long connectionRequest) {
+    if (connect < 0 || socket < 0 || connectionRequest < 0) {
+      throw new IllegalArgumentException("Timeouts must not be negative.");
+    }
+
+    final Builder copy = new Builder(this);
+    copy.connectTimeoutMillis = connect;
+    copy.socketTimeoutMillis = socket;
+    copy.connectionRequestTimeoutMillis = connectionRequest;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration with the specified deadlines in
+   * milliseconds for each RSS feed load, each of which is unlimited if zero.
+   * Unlike {@link #withTimeouts(int, int, long)}, which configures the
+   * connection pool, the deadlines are applied to every request, also by
+   * readers with their own {@link org.apache.http.client.HttpClient}. The
+   * total deadline is enforced even while the RSS feed is being parsed, so a
+   * server which trickles bytes cannot hold the loading thread. A load which
+   * misses a deadline fails with an {@link RSSTimeoutException}. A non-zero
+   * connect deadline takes precedence over the connect timeout of
+   * {@link #withTimeouts(int, int, long)} and of any other HTTP client. By
+   * default, there are no deadlines, so only the timeouts of the HTTP client
+   * apply.
+   * 
+   * @param connect deadline until a TCP connection is established
+   * @param firstByte deadline until the response headers have arrived
+   * @param total deadline until the RSS feed has been downloaded and parsed
+   */
+  public RSSConfig withDeadlines(int connect, long firstByte, long total) {
+    if (connect < 0 || firstByte < 0 || total < 0) {
+      throw new IllegalArgumentException("Deadlines must not be negative.");
+    }
+
+    final Builder copy = new Builder(this);
+    copy.connectDeadlineMillis = connect;
+    copy.firstByteTimeoutMillis = firstByte;
+    copy.totalTimeoutMillis = total;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration which determines how
+   * {@link RSSReader#loadNew(String)} tracks RSS items it has already
+   * returned. By default, the 1024 most recent RSS items of each RSS feed are
+   * remembered and parsing stops after 3 consecutive seen RSS items, which
+   * suits RSS feeds that list their newest items first.
+   *
+   * @param capacity maximum number of remembered RSS items per RSS feed
+   * @param stopAfter number of consecutive seen RSS items after which
+   *          parsing stops, or zero to always parse the whole RSS feed
+   */
+  public RSSConfig withSeenItems(int capacity, int stopAfter) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive.");
+    } else if (stopAfter < 0) {
+      throw new IllegalArgumentException("Run of seen items must not be negative.");
+    }
+
+    final Builder copy = new Builder(this);
+    copy.seenCapacity = capacity;
+    copy.stopAfterSeen = stopAfter;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration which limits how hard
+   * {@link RSSLoader} loads RSS feeds from any single host. Each host gets a
+   * token bucket which holds up to {@code burst} requests and refills at
+   * {@code requestsPerSecond}. Loads for a host which is at its limit wait
+   * while loads for other hosts proceed. By default, hosts are not limited.
+   *
+   * @param maxConcurrent maximum number of concurrent loads per host, or zero
+   *          if unlimited
+   * @param requestsPerSecond average number of requests per second per host,
+   *          or zero if unlimited
+   * @param burst number of requests per host which may be sent without delay
+   */
+  public RSSConfig withHostLimits(int maxConcurrent, double requestsPerSecond,
+      int burst) {
+    if (maxConcurrent < 0) {
+      throw new IllegalArgumentException("Concurrent loads per host must not be negative.");
+    } else if (!(requestsPerSecond >= 0) || Double.isInfinite(requestsPerSecond)) {
+      throw new IllegalArgumentException("Request rate must be finite and not negative.");
+    } else if (burst < 1) {
+      throw new IllegalArgumentException("Burst must be positive.");
+    }
+
+    final Builder copy = new Builder(this);
+    copy.hostConcurrency = maxConcurrent;
+    copy.hostRequestsPerSecond = requestsPerSecond;
+    copy.hostBurst = burst;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration which determines whether
+   * {@link RSSLoader} coalesces loads of the same RSS feed URI. With
+   * coalescing, a load of a URI which is already queued or being loaded
+   * returns the same {@link java.util.concurrent.Future} instead of
+   * downloading and parsing the RSS feed again. Once loaded successfully, the
+   * RSS feed is also shared for the specified number of milliseconds. By
+   * default, loads are not coalesced.
+   *
+   * @param freshness milliseconds during which a loaded RSS feed is shared,
+   *          zero to only share loads in progress, or negative to disable
+   *          coalescing
+   */
+  public RSSConfig withCoalescing(long freshness) {
+    final Builder copy = new Builder(this);
+    copy.coalesceMillis = freshness < 0 ? -1 : freshness;
+    return new RSSConfig(copy);
+  }
 
+  /**
+   * Returns a copy of this configuration which determines how often
+   * {@link RSSLoader#subscribe(String)} refreshes an RSS feed. Once the
+   * publish rate of an RSS feed is known from the &lt;pubDate&gt; of its RSS
+   * items, the RSS feed is refreshed about as often as it publishes. Until
+   * then, it is refreshed after the number of minutes given by its
+   * &lt;ttl&gt; element, or after the default interval if it has none.
+   * Refreshes which find nothing new back off exponentially. By default, the
+   * minimum interval is 5 minutes, the default interval is one hour and the
+   * maximum interval is one day.
+   *
+   * @param minimum minimum number of milliseconds between refreshes
+   * @param fallback number of milliseconds between refreshes of RSS feeds
+   *          without &lt;ttl&gt; element or known publish rate
+   * @param maximum maximum number of milliseconds between refreshes
+   */
+  public RSSConfig withRefreshInterval(long minimum, long fallback, long maximum) {
+    if (minimum < 0 || fallback < minimum || maximum < fallback) {
+      throw new IllegalArgumentException(
+          "Intervals must satisfy 0 <= minimum <= fallback <= maximum.");
+    }
+
+    final Builder copy = new Builder(this);
+    copy.minRefreshMillis = minimum;
+    copy.defaultRefreshMillis = fallback;
+    copy.maxRefreshMillis = maximum;
+    return new RSSConfig(copy);
+  }
+
+  /**
+   * Returns a copy of this configuration with the specified minimum and
+   * default refresh intervals. The maximum interval is raised to the default
+   * interval if necessary.
+   *
+   * @see #withRefreshInterval(long, long, long)
+   */
+  public RSSConfig withRefreshInterval(long minimum, long fallback) {
+    return withRefreshInterval(minimum, fallback, Math.max(maxRefreshMillis, fallback));
+  }
+
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Directory of parsed RSS feeds which survives restarts of the application.
+ * Each RSS feed is stored in its own file together with the HTTP cache
+ * validators and the time at which it was retrieved. Files are replaced
+ * atomically so that a crash never leaves a partially written RSS feed
+ * behind.
+ * <p>
+ * Pass a disk cache to {@link RSSCachingReader} to serve RSS feeds from local
+ * files after a restart. This class is thread-safe.
+ *
+ * @author Mr Horn
+ */
+public class RSSDiskCache {
+
+  /**
+   * Leading bytes of every file, "RSSC" in ASCII.
+   */
+  private static final int MAGIC = 0x52535343;
+
+  /**
+   * Version of the file layout which follows the leading bytes.
+   */
+  private static final byte LAYOUT = 2;
+
+  private static final String SUFFIX = ".feed";
+
+  private static final String TEMP_PREFIX = "rss";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /**
+   * Age in milliseconds after which a temporary file is considered to have
+   * been left behind by a crash rather than being written concurrently.
+   */
+  private static final long STALE_TEMP_MILLIS = 60 * 1000L;
+
+  private final File directory;
+
+  /**
+   * Instantiate a disk cache which stores RSS feeds in the specified
+   * directory. The directory is created if it does not exist. Temporary
+   * files which a crash left behind are deleted.
+   *
+   * @throws RSSFault if the directory cannot be created
+   */
+  public RSSDiskCache(File directory) {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new RSSFault("Cannot create directory " + directory);
+    }
+
+    this.directory = directory;
+    deleteStaleTempFiles();
+  }
+
+  private void deleteStaleTempFiles() {
+    final File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    final long stale = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+    for (File file : files) {
+      final String name = file.getName();
+      if (name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX)
+          && file.lastModified() < stale) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Returns the stored RSS feed of the specified URI, or {@code null} if
+   * there is none. Unreadable files are deleted.
+   */
+  Entry get(String uri) {
+    final File file = file(uri);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    final Entry entry = read(file);
+    if (entry == null || !entry.uri.equals(uri)) {
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Returns all stored RSS feeds. Unreadable files are deleted.
+   */
+  List<Entry> getAll() {
+    final List<Entry> entries = new ArrayList<Entry>();
+    final File[] files = directory.listFiles();
+    if (files == null) {
+      return entries;
+    }
+
+    for (File file : files) {
+      if (file.getName().endsWith(SUFFIX)) {
+        final Entry entry = read(file);
+        if (entry != null) {
+          entries.add(entry);
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Stores the RSS feed of the specified URI, replacing any previously stored
+   * version. The RSS feed is first written to a temporary file which is then
+   * renamed.
+   *
+   * @return {@code true} if the RSS feed has been stored, {@code false} if an
+   *         I/O error occurred
+   */
+  boolean put(String uri, RSSFeed feed, Validators validators, long fetched) {
+    File temp = null;
+    DataOutputStream out = null;
+    try {
+      temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, directory);
+      out = new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(temp)));
+      out.writeInt(MAGIC);
+      out.writeByte(LAYOUT);
+      out.writeUTF(uri);
+      out.writeLong(fetched);
+      writeNullable(validators == null ? null : validators.etag, out);
+      writeNullable(validators == null ? null : validators.lastModified, out);
+      FeedCodec.encode(feed, out);
+      out.close();
+      out = null;
+
+      final File file = file(uri);
+      if (!temp.renameTo(file)) {
+        // Some platforms refuse to rename onto an existing file
+        file.delete();
+        if (!temp.renameTo(file)) {
+          return false;
+        }
+      }
+      temp = null;
+      return true;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      Resources.closeQuietly(out);
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * Updates the time at which the stored RSS feed of the specified URI was
+   * retrieved, e.g. after the server has reported that it has not been
+   * modified. Only the time is overwritten in place; the RSS feed itself is
+   * not rewritten.
+   *
+   * @return {@code true} if the time has been updated, {@code false} if there
+   *         is no such RSS feed or an I/O error occurred
+   */
+  boolean touch(String uri, long fetched) {
+    final File file = file(uri);
+    if (!file.isFile()) {
+      return false;
+    }
+
+    RandomAccessFile out = null;
+    try {
+      out = new RandomAccessFile(file, "rw");
+      if (out.readInt() != MAGIC || out.readByte() != LAYOUT
+          || !out.readUTF().equals(uri)) {
+        return false;
+      }
+
+      // the time directly follows the URI
+      out.writeLong(fetched);
+      return true;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      Resources.closeQuietly(out);
+    }
+  }
+
+  /**
+   * Deletes the stored RSS feed of the specified URI, if any.
+   */
+  public void remove(String uri) {
+    file(uri).delete();
+  }
+
+  /**
+   * Deletes all stored RSS feeds.
+   */
+  public void clear() {
+    final File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    for (File file : files) {
+      if (file.getName().endsWith(SUFFIX)) {
+        file.delete();
+      }
+    }
+  }
+
+  private Entry read(File file) {
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != MAGIC || in.readByte() != LAYOUT) {
+        throw new IOException("Not an RSS feed file: " + file);
+      }
+
+      final String uri = in.readUTF();
+      final long fetched = in.readLong();
+      final String etag = readNullable(in);
+      final String lastModified = readNullable(in);
+      // the length prefix of the feed cannot exceed the file
+      final RSSFeed feed = FeedCodec.decode(in, file.length());
+      final Validators validators = etag == null && lastModified == null ? null
+          : new Validators(etag, lastModified);
+      return new Entry(uri, feed, validators, fetched);
+    } catch (IOException e) {
+      // Written by an incompatible version or otherwise corrupt
+      return discard(file, in);
+    } catch (RuntimeException e) {
+      // Corrupt in a way the decoder does not detect as such
+      return discard(file, in);
+    } finally {
+      Resources.closeQuietly(in);
+    }
+  }
+
+  private static Entry discard(File file, DataInputStream in) {
+    Resources.closeQuietly(in);
+    file.delete();
+    return null;
+  }
+
+  private static void writeNullable(String value, DataOutputStream out) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  /**
+   * Returns the file of the specified URI. File names are hex-encoded SHA-1
+   * digests of the URI.
+   */
+  private File file(String uri) {
+    final byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1").digest(uri.getBytes("UTF-8"));
+    } catch (NoSuchAlgorithmException e) {
+      throw new RSSFault(e);
+    } catch (java.io.UnsupportedEncodingException e) {
+      throw new RSSFault(e);
+    }
+
+    final StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+    for (byte b : digest) {
+      name.append(Character.forDigit((b >> 4) & 0xF, 16));
+      name.append(Character.forDigit(b & 0xF, 16));
+    }
+    return new File(directory, name.append(SUFFIX).toString());
+  }
+
+  /**
+   * Immutable stored RSS feed.
+   */
+  static final class Entry {
+
+    final String uri;
+    final RSSFeed feed;
+    final Validators validators;
+
+    /**
+     * Time in milliseconds when the RSS feed was retrieved.
+     */
+    final long fetched;
+
+    Entry(String uri, RSSFeed feed, Validators validators, long fetched) {
+      this.uri = uri;
+      this.feed = feed;
+      this.validators = validators;
+      this.fetched = fetched;
+    }
+
+  }
+
+}
@@ -26,6 +26,19 @@ public class RSSFeed extends RSSBase {
   private final java.util.List<RSSItem> items;
 	private java.util.Date lastBuildDate;
 	private Integer ttl;
+	private boolean truncated;
+
+  /**
+   * Bit set of the hours of the day (GMT) during which the RSS feed should not
+   * be refreshed.
+   */
+  private int skipHours;
+
+  /**
+   * Bit set of the {@link java.util.Calendar} days of the week (GMT) on which
+   * the RSS feed should not be refreshed.
+   */
+  private int skipDays;
 
   RSSFeed() {
     super(/* initial capacity for category names */ (byte) 3);
@@ -43,6 +56,10 @@ public class RSSFeed extends RSSBase {
     items.add(item);
   }
 
+  void clearItems() {
+    items.clear();
+  }
+
 	void setLastBuildDate(java.util.Date date) {
 		lastBuildDate = date;
 	}
@@ -59,5 +76,70 @@ public class RSSFeed extends RSSBase {
 		return ttl;
 	}
 
+  void addSkipHour(int hour) {
+    skipHours |= 1 << hour;
+  }
+
+  /**
+   * Returns the hours of the day, from 0 to 23 in GMT, during which the RSS
+   * feed should not be refreshed, as given by its &lt;skipHours&gt; element.
+   */
+  public java.util.Set<Integer> getSkipHours() {
+    return bits(skipHours);
+  }
+
+  int getSkipHourBits() {
+    return skipHours;
+  }
+
+  void setSkipHourBits(int bits) {
+    skipHours = bits;
+  }
+
+  void addSkipDay(int day) {
+    skipDays |= 1 << day;
+  }
+
+  /**
+   * Returns the days of the week in GMT, as {@link java.util.Calendar}
+   * constants such as {@link java.util.Calendar#SUNDAY}, on which the RSS
+   * feed should not be refreshed, as given by its &lt;skipDays&gt; element.
+   */
+  public java.util.Set<Integer> getSkipDays() {
+    return bits(skipDays);
+  }
+
+  int getSkipDayBits() {
+    return skipDays;
+  }
+
+  void setSkipDayBits(int bits) {
+    skipDays = bits;
+  }
+
+  private static java.util.Set<Integer> bits(int bits) {
+    final java.util.Set<Integer> set = new java.util.TreeSet<Integer>();
+    for (int i = 0; i < Integer.SIZE; i++) {
+      if ((bits & (1 << i)) != 0) {
+        set.add(i);
+      }
+    }
+    return java.util.Collections.unmodifiableSet(set);
+  }
+
+	void setTruncated(boolean truncated) {
+		this.truncated = truncated;
+	}
+
+	/**
+	 * Returns {@code true} if parsing stopped before the end of the feed, for
+	 * example because a limit of the {@link RSSConfig} has been reached. In
+	 * this case, the RSS feed may lack items and channel elements which follow
+	 * the last parsed item.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
 }
 
@@ -29,6 +29,23 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    */
   private static final String RSS_ITEM = "item";
 
+  /**
+   * Constant for the XML element name of the RSS channel.
+   */
+  private static final String RSS_CHANNEL = "channel";
+
+  /**
+   * Constant for the XML root element name of RSS feeds.
+   */
+  private static final String RSS_ROOT = "rss";
+
+  /**
+   * Constants for the XML elements of the RSS channel which contain the
+   * &lt;hour&gt; and &lt;day&gt; elements.
+   */
+  private static final String RSS_SKIP_HOURS = "skipHours";
+  private static final String RSS_SKIP_DAYS = "skipDays";
+
   /**
    * Constant symbol table to ensure efficient treatment of handler states.
    */
@@ -38,7 +55,7 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    * Reference is never {@code null}. Visibility must be package-private to
    * ensure efficiency of inner classes.
    */
-  final RSSFeed feed = new RSSFeed();
+  RSSFeed feed = new RSSFeed();
 
   /**
    * Reference is {@code null} unless started to parse &lt;item&gt; element.
@@ -46,6 +63,22 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    */
   RSSItem item;
 
+  /**
+   * If not {@code null}, RSS items are passed to this listener rather than
+   * being added to the {@link #feed}.
+   */
+  private RSSListener listener;
+
+  /**
+   * Whether the {@link #listener} has received the channel metadata.
+   */
+  private boolean channelDelivered;
+
+  /**
+   * Number of RSS items which have been parsed so far.
+   */
+  private int itemCount;
+
   /**
    * If not {@code null}, then buffer the characters inside an XML text element.
    */
@@ -133,6 +166,18 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
     }
   };
 
+  /**
+   * Setter for an RSS &lt;guid&gt; element inside an &lt;item&gt; element.
+   */
+  private final Setter SET_GUID = new ContentSetter() {
+    @Override
+    public void set(String guid) {
+      if (item != null) {
+        item.setGuid(guid);
+      }
+    }
+  };
+
   /**
    * Setter for RSS &lt;link&gt; elements inside a &lt;channel&gt; or an
    * &lt;item&gt; element. The title of the RSS feed is set only if
@@ -142,11 +187,11 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
   private final Setter SET_LINK = new ContentSetter() {
     @Override
     public void set(String link) {
-      final android.net.Uri uri = android.net.Uri.parse(link);
-      if (item == null) {
-        feed.setLink(uri);
+      final RSSBase base = item == null ? feed : item;
+      if (config.lazyConversion) {
+        base.setRawLink(link);
       } else {
-        item.setLink(uri);
+        base.setLink(android.net.Uri.parse(link));
       }
     }
   };
@@ -160,8 +205,15 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
   private final Setter SET_PUBDATE = new ContentSetter() {
     @Override
     public void set(String pubDate) {
-      final java.util.Date date = Dates.parseRfc822(pubDate);
-      if (item == null) {
+      if (config.lazyConversion) {
+        (item == null ? feed : item).setRawPubDate(pubDate);
+        return;
+      }
+
+      final java.util.Date date = Dates.parseRfc822(pubDate, config.lenientDates);
+      if (date == null) {
+        // Ignore invalid dates in lenient mode.
+      } else if (item == null) {
         feed.setPubDate(date);
       } else {
         item.setPubDate(date);
@@ -175,8 +227,10 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
 	private final Setter SET_LAST_BUILE_DATE = new ContentSetter() {
 		@Override
 		public void set(String pubDate) {
-			final java.util.Date date = Dates.parseRfc822(pubDate);
-			if (item == null) {
+			final java.util.Date date = Dates.parseRfc822(pubDate, config.lenientDates);
+			if (date == null) {
+				// Ignore invalid dates in lenient mode.
+			} else if (item == null) {
 				feed.setLastBuildDate(date);
 			} else {
 				// Ignore invalid elements which are inside item elements.
@@ -199,6 +253,41 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
 		}
 	};
 
+  /**
+   * Setter for RSS &lt;hour&gt; elements inside a &lt;skipHours&gt; element
+   * of a &lt;channel&gt;. Hours outside the range 0 to 23 are ignored.
+   */
+  private final Setter ADD_SKIP_HOUR = new ContentSetter() {
+    @Override
+    public void set(String hour) {
+      final int value = Integers.parseInteger(hour.trim());
+      if (item == null && value >= 0 && value < 24) {
+        feed.addSkipHour(value);
+      }
+    }
+  };
+
+  /**
+   * Setter for RSS &lt;day&gt; elements inside a &lt;skipDays&gt; element of a
+   * &lt;channel&gt;. Unknown day names are ignored.
+   */
+  private final Setter ADD_SKIP_DAY = new ContentSetter() {
+    @Override
+    public void set(String day) {
+      final int value = DAYS.indexOf(day.trim()) + 1;
+      if (item == null && value > 0) {
+        feed.addSkipDay(value);
+      }
+    }
+  };
+
+  /**
+   * English day names in the order of the {@link java.util.Calendar} day of
+   * week constants, which start at {@link java.util.Calendar#SUNDAY} (1).
+   */
+  private static final java.util.List<String> DAYS = java.util.Arrays.asList(
+      "Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday");
+
   /**
    * Setter for one or multiple RSS &lt;category&gt; elements inside a
    * &lt;channel&gt; or an &lt;item&gt; element. The title of the RSS feed is
@@ -246,7 +335,8 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
         return;
       }
 
-      item.addThumbnail(new MediaThumbnail(android.net.Uri.parse(url), height, width));
+      item.addThumbnail(config.lazyConversion ? new MediaThumbnail(url, height, width)
+          : new MediaThumbnail(android.net.Uri.parse(url), height, width));
     }
 
   };
@@ -277,8 +367,9 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
 				return;
 			}
 
-			MediaEnclosure enclosure = new MediaEnclosure(
-					android.net.Uri.parse(url), length, mimeType);
+			MediaEnclosure enclosure = config.lazyConversion
+					? new MediaEnclosure(url, length, mimeType)
+					: new MediaEnclosure(android.net.Uri.parse(url), length, mimeType);
 			item.setEnclosure(enclosure);
 		}
 	};
@@ -302,11 +393,14 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
     setters.put("description", SET_DESCRIPTION);
     setters.put("content:encoded", SET_CONTENT);
     setters.put("link", SET_LINK);
+    setters.put("guid", SET_GUID);
     setters.put("category", ADD_CATEGORY);
     setters.put("pubDate", SET_PUBDATE);
     setters.put("media:thumbnail", ADD_MEDIA_THUMBNAIL);
     setters.put("lastBuildDate", SET_LAST_BUILE_DATE);
     setters.put("ttl", SET_TTL);
+    setters.put("hour", ADD_SKIP_HOUR);
+    setters.put("day", ADD_SKIP_DAY);
     setters.put("enclosure", SET_ENCLOSURE);
   }
 
@@ -317,6 +411,65 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
     return feed;
   }
 
+  /**
+   * Prepares this SAX handler to process another XML document. The RSS feed
+   * of the previous document is released.
+   */
+  void reset() {
+    feed = new RSSFeed();
+    item = null;
+    buffer = null;
+    setter = null;
+    listener = null;
+    channelDelivered = false;
+    itemCount = 0;
+  }
+
+  /**
+   * Pass RSS items to the specified listener rather than adding them to the
+   * RSS feed. Must be called before the XML document is processed.
+   */
+  void setListener(RSSListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Thrown to abort the SAX parser when the {@link #listener} does not want
+   * any further RSS items. It is unchecked so that it passes through SAX
+   * parser implementations unchanged.
+   */
+  static final class StopParsing extends RuntimeException {
+
+    /**
+     * Unsupported serialization
+     */
+    private static final long serialVersionUID = 1L;
+
+    StopParsing() {
+      super("RSS feed parsing stopped");
+    }
+
+    /**
+     * Stack trace is never used.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+
+  }
+
+  /**
+   * Determines if this SAX handler makes use of the specified element, its
+   * content or its child elements. Parsers which can skip XML subtrees need
+   * not report elements for which this method returns {@code false}.
+   */
+  boolean accepts(String qname) {
+    return setters.containsKey(qname) || RSS_ITEM.equals(qname)
+        || RSS_CHANNEL.equals(qname) || RSS_ROOT.equals(qname)
+        || RSS_SKIP_HOURS.equals(qname) || RSS_SKIP_DAYS.equals(qname);
+  }
+
   /**
    * Identify the appropriate dispatcher which should be used to store XML data
    * in a POJO. Unsupported RSS 2.0 elements are currently ignored.
@@ -328,6 +481,7 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
     setter = setters.get(qname);
     if (setter == null) {
       if (RSS_ITEM.equals(qname)) {
+        deliverChannel();
         item = new RSSItem(config.categoryAvg, config.thumbnailAvg);
       }
     } else if (setter instanceof AttributeSetter) {
@@ -347,10 +501,62 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
       // clear buffer
       buffer = null;
     } else if (RSS_ITEM.equals(qname)) {
-      feed.addItem(item);
+      final RSSItem parsed = item;
 
       // (re)enter <channel> scope
       item = null;
+
+      if (isTooOld(parsed)) {
+        stop();
+      }
+
+      itemCount++;
+      if (listener == null) {
+        feed.addItem(parsed);
+      } else if (!listener.onItem(parsed)) {
+        stop();
+      }
+
+      if (config.maxItems > 0 && itemCount >= config.maxItems) {
+        stop();
+      }
+    }
+  }
+
+  /**
+   * Determines if the RSS item has been published before the cut-off date of
+   * the configuration. Items without publication date are never too old.
+   */
+  private boolean isTooOld(RSSItem item) {
+    if (config.minPubDate == Long.MIN_VALUE) {
+      return false;
+    }
+
+    final java.util.Date pubDate = item.getPubDate();
+    return pubDate != null && pubDate.getTime() < config.minPubDate;
+  }
+
+  /**
+   * Marks the RSS feed as truncated and aborts the parser.
+   */
+  private void stop() {
+    feed.setTruncated(true);
+    throw new StopParsing();
+  }
+
+  @Override
+  public void endDocument() {
+    deliverChannel();
+  }
+
+  /**
+   * Passes the channel metadata to the {@link #listener} unless this has
+   * already happened.
+   */
+  private void deliverChannel() {
+    if (listener != null && !channelDelivered) {
+      channelDelivered = true;
+      listener.onChannel(feed);
     }
   }
 
@@ -24,6 +24,7 @@ package org.mcsoxford.rss;
 public class RSSItem extends RSSBase {
   private final java.util.List<MediaThumbnail> thumbnails;
   private String content;
+  private String guid;
 	private MediaEnclosure enclosure;
 
   /* Internal constructor for RSSHandler */
@@ -58,6 +59,19 @@ public class RSSItem extends RSSBase {
     this.content = content;
   }
 
+  /**
+   * Returns the globally unique identifier of the RSS item as given by its
+   * &lt;guid&gt; element, or {@code null} if it has none.
+   */
+  public String getGuid() {
+    return guid;
+  }
+
+  /* Internal method for RSSHandler */
+  void setGuid(String guid) {
+    this.guid = guid;
+  }
+
 	public MediaEnclosure getEnclosure() {
 		return enclosure;
 	}
@@ -0,0 +1,542 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Append-only history of RSS items of many RSS feeds which is kept on disk
+ * rather than on the heap. RSS items are appended to segment files of fixed
+ * size which are memory-mapped, and an RSS item is only decoded when it is
+ * read. Per RSS feed, only the location of each RSS item is kept in memory.
+ * <p>
+ * RSS items of an RSS feed are iterated newest-first, that is in reverse
+ * order of {@link #append(String, RSSItem)}. Since RSS feeds list their
+ * newest item first, append the RSS items of a newly loaded RSS feed in
+ * reverse document order. The history is never deduplicated; when an RSS item
+ * with the same link has been appended several times,
+ * {@link #find(String, String)} returns the most recently appended one.
+ * <p>
+ * {@link #compact(long)} drops old RSS items and rewrites the segment files
+ * which contained them. This class is thread-safe. Callers must call
+ * {@link #close()} to release all resources.
+ *
+ * @author Mr Horn
+ */
+public class RSSItemStore implements java.io.Closeable {
+
+  /**
+   * Default size of segment files in bytes.
+   */
+  private static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+  private static final String SUFFIX = ".seg";
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  // Record layout: length of the encoded RSS item (zero marks the end of a
+  // segment), hash of the link, time, length of the feed URI, UTF-8 bytes of
+  // the feed URI and finally the encoded RSS item.
+  private static final int LENGTH = 0;
+  private static final int LINK_HASH = 4;
+  private static final int TIME = 12;
+  private static final int FEED_LENGTH = 20;
+  private static final int HEADER = 22;
+
+  private final File directory;
+  private final int segmentSize;
+
+  /**
+   * Segments by number; deleted segments are {@code null}. Guarded by this.
+   */
+  private final List<Segment> segments = new ArrayList<Segment>();
+
+  /**
+   * Locations of the RSS items of each RSS feed. Guarded by this.
+   */
+  private final Map<String, Locations> index = new HashMap<String, Locations>();
+
+  /**
+   * Set once the store has been closed. Guarded by this.
+   */
+  private boolean closed;
+
+  /**
+   * Instantiate a store which keeps RSS items in segment files of 4 MiB in
+   * the specified directory. Previously stored RSS items are indexed.
+   *
+   * @throws RSSFault if the directory cannot be created or read
+   */
+  public RSSItemStore(File directory) {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Instantiate a store which keeps RSS items in segment files of the
+   * specified size in the specified directory. RSS items which do not fit
+   * into a segment of this size get a larger segment of their own.
+   *
+   * @throws RSSFault if the directory cannot be created or read
+   */
+  public RSSItemStore(File directory, int segmentSize) {
+    if (segmentSize < HEADER + 1) {
+      throw new IllegalArgumentException("Segment size is too small.");
+    } else if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new RSSFault("Cannot create directory " + directory);
+    }
+
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    open();
+  }
+
+  /**
+   * Appends the RSS item to the history of the specified RSS feed. Its
+   * publication date, or else the current time, determines when
+   * {@link #compact(long)} drops it.
+   *
+   * @throws RSSFault if the RSS item cannot be written
+   */
+  public void append(String feedUri, RSSItem item) {
+    final byte[] feed = feedUri.getBytes(UTF8);
+    if (feed.length > 0xFFFF) {
+      throw new IllegalArgumentException("RSS feed URI is too long.");
+    }
+
+    final byte[] payload = FeedCodec.encode(item);
+    final long linkHash = Hashes.hash64(item.getLinkString());
+    final long time = item.getPubDate() == null ? System.currentTimeMillis()
+        : item.getPubDate().getTime();
+
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("RSS item store has been closed.");
+      }
+
+      final int size = HEADER + feed.length + payload.length;
+      final Segment segment = writable(size);
+      final ByteBuffer buffer = segment.buffer;
+      final int offset = segment.end;
+      buffer.putLong(offset + LINK_HASH, linkHash);
+      buffer.putLong(offset + TIME, time);
+      buffer.putShort(offset + FEED_LENGTH, (short) feed.length);
+      put(buffer, offset + HEADER, feed);
+      put(buffer, offset + HEADER + feed.length, payload);
+      // the record is complete once its length has been written
+      buffer.putInt(offset + LENGTH, payload.length);
+      segment.end += size;
+
+      locations(feedUri).add(location(segment.number, offset));
+    }
+  }
+
+  /**
+   * Returns the RSS items of the specified RSS feed, newest first. The
+   * returned {@link Iterable} is a snapshot which does not reflect subsequent
+   * appends.
+   */
+  public Iterable<RSSItem> items(String feedUri) {
+    final long[] locations;
+    final Segment[] snapshot;
+    synchronized (this) {
+      final Locations feed = index.get(feedUri);
+      locations = feed == null ? new long[0] : feed.toArray();
+      snapshot = segments.toArray(new Segment[segments.size()]);
+    }
+
+    return new Iterable<RSSItem>() {
+      @Override
+      public Iterator<RSSItem> iterator() {
+        return new Iterator<RSSItem>() {
+
+          private int next = locations.length - 1;
+
+          @Override
+          public boolean hasNext() {
+            return next >= 0;
+          }
+
+          @Override
+          public RSSItem next() {
+            if (next < 0) {
+              throw new NoSuchElementException();
+            }
+            return read(snapshot, locations[next--]);
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns the number of RSS items of the specified RSS feed.
+   */
+  public synchronized int size(String feedUri) {
+    final Locations feed = index.get(feedUri);
+    return feed == null ? 0 : feed.size;
+  }
+
+  /**
+   * Returns the most recently appended RSS item of the specified RSS feed with
+   * the specified link, or {@code null} if there is none. Only RSS items
+   * whose link hash matches are decoded.
+   */
+  public RSSItem find(String feedUri, String link) {
+    final long hash = Hashes.hash64(link);
+    final long[] locations;
+    final Segment[] snapshot;
+    synchronized (this) {
+      final Locations feed = index.get(feedUri);
+      if (feed == null) {
+        return null;
+      }
+      locations = feed.toArray();
+      snapshot = segments.toArray(new Segment[segments.size()]);
+    }
+
+    for (int i = locations.length - 1; i >= 0; i--) {
+      final Segment segment = snapshot[segment(locations[i])];
+      if (segment.buffer.getLong(offset(locations[i]) + LINK_HASH) == hash) {
+        final RSSItem item = read(snapshot, locations[i]);
+        if (link.equals(item.getLinkString())) {
+          return item;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Drops all RSS items which have been published, or appended if they have
+   * no publication date, before the specified time. Segments which contain
+   * dropped RSS items are rewritten without them, or deleted if no RSS items
+   * remain. The segment which is currently appended to is left untouched.
+   *
+   * @param before time in milliseconds
+   * @return number of dropped RSS items
+   * @throws RSSFault if a segment cannot be rewritten
+   */
+  public synchronized int compact(long before) {
+    int dropped = 0;
+    for (int i = 0; i < segments.size() - 1; i++) {
+      final Segment segment = segments.get(i);
+      if (segment == null) {
+        continue;
+      }
+
+      // Measure the RSS items which are kept
+      final ByteBuffer buffer = segment.buffer;
+      int live = 0;
+      int dead = 0;
+      for (int offset = 0; offset < segment.end; offset += recordSize(buffer, offset)) {
+        if (buffer.getLong(offset + TIME) < before) {
+          dead++;
+        } else {
+          live += recordSize(buffer, offset);
+        }
+      }
+
+      if (dead == 0) {
+        continue;
+      }
+
+      dropped += dead;
+      if (live == 0) {
+        segment.file.delete();
+        segments.set(i, null);
+      } else {
+        segments.set(i, rewrite(segment, live, before));
+      }
+    }
+
+    if (dropped > 0) {
+      index.clear();
+      for (Segment segment : segments) {
+        if (segment != null) {
+          index(segment);
+        }
+      }
+    }
+    return dropped;
+  }
+
+  /**
+   * Flushes all segments to disk and releases them.
+   */
+  public synchronized void close() {
+    for (Segment segment : segments) {
+      if (segment != null) {
+        segment.buffer.force();
+      }
+    }
+    segments.clear();
+    index.clear();
+    closed = true;
+  }
+
+  /**
+   * Maps all existing segments in order of their numbers and indexes their
+   * RSS items.
+   */
+  private void open() {
+    final File[] files = directory.listFiles();
+    if (files == null) {
+      throw new RSSFault("Cannot read directory " + directory);
+    }
+
+    final List<Integer> numbers = new ArrayList<Integer>();
+    for (File file : files) {
+      final String name = file.getName();
+      if (name.endsWith(SUFFIX)) {
+        try {
+          numbers.add(Integer.valueOf(name.substring(0, name.length() - SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          // not a segment
+        }
+      }
+    }
+
+    final Integer[] sorted = numbers.toArray(new Integer[numbers.size()]);
+    Arrays.sort(sorted);
+    for (Integer number : sorted) {
+      while (segments.size() < number) {
+        segments.add(null);
+      }
+
+      final Segment segment = map(file(number), number, 0);
+      segments.add(segment);
+      index(segment);
+    }
+  }
+
+  /**
+   * Finds the end of the segment and adds the locations of its RSS items to
+   * the index.
+   */
+  private void index(Segment segment) {
+    final ByteBuffer buffer = segment.buffer;
+    int offset = 0;
+    while (offset + HEADER <= buffer.limit() && buffer.getInt(offset + LENGTH) > 0) {
+      // a corrupt length ends the segment at the last good record, which
+      // the next append overwrites
+      final int feedLength = buffer.getShort(offset + FEED_LENGTH) & 0xFFFF;
+      final long size = (long) HEADER + feedLength + buffer.getInt(offset + LENGTH);
+      if (offset + size > buffer.limit()) {
+        break;
+      }
+
+      final byte[] feed = new byte[feedLength];
+      get(buffer, offset + HEADER, feed);
+      locations(new String(feed, UTF8)).add(location(segment.number, offset));
+      offset += (int) size;
+    }
+    segment.end = offset;
+  }
+
+  /**
+   * Returns the segment to which a record of the specified size can be
+   * appended, starting a new segment if necessary.
+   */
+  private Segment writable(int size) {
+    if (!segments.isEmpty()) {
+      final Segment last = segments.get(segments.size() - 1);
+      if (last != null && last.end + size <= last.buffer.capacity()) {
+        return last;
+      }
+    }
+
+    final int number = segments.size();
+    final Segment segment = map(file(number), number, Math.max(segmentSize, size));
+    segments.add(segment);
+    return segment;
+  }
+
+  /**
+   * Copies the RSS items published at or after the specified time into a new
+   * file which then replaces the segment.
+   */
+  private Segment rewrite(Segment segment, int live, long before) {
+    final File temp = new File(directory, segment.number + ".tmp");
+    // a temporary file left behind by a crash must not contribute any bytes
+    if (temp.exists() && !temp.delete()) {
+      throw new RSSFault("Cannot delete stale file " + temp);
+    }
+    final Segment compacted = map(temp, segment.number, live);
+    final ByteBuffer source = segment.buffer;
+    for (int offset = 0; offset < segment.end; offset += recordSize(source, offset)) {
+      if (source.getLong(offset + TIME) >= before) {
+        final ByteBuffer record = source.duplicate();
+        record.position(offset);
+        record.limit(offset + recordSize(source, offset));
+        final ByteBuffer target = compacted.buffer.duplicate();
+        target.position(compacted.end);
+        target.put(record);
+        compacted.end += record.limit() - offset;
+      }
+    }
+    compacted.buffer.force();
+
+    if (!temp.renameTo(segment.file)) {
+      segment.file.delete();
+      if (!temp.renameTo(segment.file)) {
+        throw new RSSFault("Cannot replace segment " + segment.file);
+      }
+    }
+    return new Segment(segment.file, segment.number, compacted.buffer, compacted.end);
+  }
+
+  /**
+   * Maps the file, which is extended to the specified size if it is smaller.
+   */
+  private static Segment map(File file, int number, int size) {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "rw");
+      if (raf.length() < size) {
+        raf.setLength(size);
+      }
+      final MappedByteBuffer buffer = raf.getChannel().map(
+          FileChannel.MapMode.READ_WRITE, 0, raf.length());
+      return new Segment(file, number, buffer, 0);
+    } catch (IOException e) {
+      throw new RSSFault(e);
+    } finally {
+      // the mapping stays valid after the file has been closed
+      Resources.closeQuietly(raf);
+    }
+  }
+
+  private static RSSItem read(Segment[] snapshot, long location) {
+    final ByteBuffer buffer = snapshot[segment(location)].buffer;
+    final int offset = offset(location);
+    final int length = buffer.getInt(offset + LENGTH);
+    final int feedLength = buffer.getShort(offset + FEED_LENGTH) & 0xFFFF;
+    final byte[] payload = new byte[length];
+    get(buffer, offset + HEADER + feedLength, payload);
+    try {
+      return FeedCodec.decodeItem(payload, 0, length);
+    } catch (IOException e) {
+      throw new RSSFault(e);
+    }
+  }
+
+  private static int recordSize(ByteBuffer buffer, int offset) {
+    return HEADER + (buffer.getShort(offset + FEED_LENGTH) & 0xFFFF)
+        + buffer.getInt(offset + LENGTH);
+  }
+
+  private static void put(ByteBuffer buffer, int offset, byte[] bytes) {
+    final ByteBuffer target = buffer.duplicate();
+    target.position(offset);
+    target.put(bytes);
+  }
+
+  private static void get(ByteBuffer buffer, int offset, byte[] bytes) {
+    final ByteBuffer source = buffer.duplicate();
+    source.position(offset);
+    source.get(bytes);
+  }
+
+  private Locations locations(String feedUri) {
+    Locations feed = index.get(feedUri);
+    if (feed == null) {
+      feed = new Locations();
+      index.put(feedUri, feed);
+    }
+    return feed;
+  }
+
+  private File file(int number) {
+    return new File(directory, number + SUFFIX);
+  }
+
+  private static long location(int segment, int offset) {
+    return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+  }
+
+  private static int segment(long location) {
+    return (int) (location >>> 32);
+  }
+
+  private static int offset(long location) {
+    return (int) location;
+  }
+
+  /**
+   * Memory-mapped segment file.
+   */
+  private static final class Segment {
+
+    final File file;
+    final int number;
+    final MappedByteBuffer buffer;
+
+    /**
+     * Offset at which the next record is appended.
+     */
+    int end;
+
+    Segment(File file, int number, MappedByteBuffer buffer, int end) {
+      this.file = file;
+      this.number = number;
+      this.buffer = buffer;
+      this.end = end;
+    }
+
+  }
+
+  /**
+   * Growable array of record locations in append order.
+   */
+  private static final class Locations {
+
+    long[] values = new long[16];
+    int size;
+
+    void add(long location) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = location;
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Callback which receives the parts of an RSS feed while it is being parsed
+ * by a {@link RSSStreamParserSPI}. Methods are invoked on the parsing thread.
+ * 
+ * @author Mr Horn
+ */
+public interface RSSListener {
+
+  /**
+   * Receives the channel metadata of the RSS feed. This method is called
+   * exactly once per feed, namely before the first RSS item or at the end of
+   * a feed without items. The feed never contains any items. Channel elements
+   * which follow the first &lt;item&gt; element are set on the same object
+   * after this method has returned.
+   * 
+   * @param feed channel metadata of the RSS feed
+   */
+  void onChannel(RSSFeed feed);
+
+  /**
+   * Receives an RSS item as soon as its closing &lt;/item&gt; tag has been
+   * parsed. The parser keeps no reference to the item.
+   * 
+   * @param item parsed RSS item
+   * @return {@code true} to continue parsing, {@code false} to stop parsing
+   *         the remainder of the feed
+   */
+  boolean onItem(RSSItem item);
+
+}
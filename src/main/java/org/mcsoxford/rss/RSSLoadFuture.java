@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.util.concurrent.Future;
+
+/**
+ * Future representing an RSS feed which is loaded asynchronously by an
+ * {@link RSSLoader}. Besides blocking on {@link #get()}, callers can register
+ * callbacks which are invoked once the load completes, so that no thread
+ * needs to wait for each pending RSS feed.
+ * 
+ * @author Mr Horn
+ */
+public interface RSSLoadFuture extends Future<RSSFeed> {
+
+  /**
+   * Returns the RSS feed URI which is loaded.
+   */
+  String getURI();
+
+  /**
+   * Registers a callback which is invoked once this load completes. If it has
+   * completed already, the callback is invoked immediately on the calling
+   * thread. Callbacks run in the order in which they have been registered.
+   * 
+   * @param callback receives the RSS feed or the error of this load
+   */
+  void addCallback(RSSCallback callback);
+
+}
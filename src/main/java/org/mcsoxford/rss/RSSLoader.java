@@ -15,13 +15,32 @@
  */
 package org.mcsoxford.rss;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -33,10 +52,33 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <li>{@link #fifo(int)}</li>
  * <li>{@link #priority()}</li>
  * <li>{@link #priority(int)}</li>
+ * <li>{@link #fifo(RSSConfig, int, int)}</li>
+ * <li>{@link #fifo(RSSConfig, int, int, Executor)}</li>
+ * <li>{@link #priority(RSSConfig, int, int)}</li>
+ * <li>{@link #priority(RSSConfig, int, int, Executor)}</li>
+ * <li>{@link #fifo(RSSConfig, int, ThreadFactory, int)}</li>
+ * <li>{@link #priority(RSSConfig, int, ThreadFactory, int)}</li>
  * </ul>
  * 
- * Completed RSS feed loads can be retrieved with {@link RSSLoader#take()},
- * {@link RSSLoader#poll()} or {@link RSSLoader#poll(long, TimeUnit)}.
+ * By default, a single background thread loads one RSS feed after another.
+ * Loaders constructed with a number of workers load that many RSS feeds
+ * concurrently while preserving the FIFO or priority order in which loads
+ * are started. Loaders constructed with a {@link ThreadFactory} start a new
+ * thread for every RSS feed; on Java 21 and later, pass
+ * {@code Thread.ofVirtual().factory()} to load each feed on a virtual thread.
+ * With {@link RSSConfig#withHostLimits(int, double, int)}, loads for a host
+ * which has reached its concurrency or rate limit wait while loads for other
+ * hosts proceed, and waiting hosts take turns once they become available.
+ * <p>
+ * Completed RSS feed loads, including failed ones, can be retrieved with
+ * {@link RSSLoader#take()}, {@link RSSLoader#poll()} or
+ * {@link RSSLoader#poll(long, TimeUnit)}. A batch of RSS feeds can instead be
+ * loaded with {@link RSSLoader#loadAll(Collection, long, TimeUnit)}, whose
+ * handle completes once every RSS feed has an outcome. RSS
+ * feeds passed to {@link RSSLoader#subscribe(String)} are reloaded
+ * periodically as often as they publish new RSS items, subject to their
+ * &lt;ttl&gt;, &lt;skipHours&gt; and &lt;skipDays&gt; elements, and each
+ * refresh which found changes is retrieved the same way.
  * 
  * <p>
  * <b>Usage Example</b>
@@ -75,6 +117,11 @@ public class RSSLoader {
    */
   private final static String DEFAULT_THREAD_NAME = "Asynchronous RSS feed loader";
 
+  /**
+   * Human-readable name of the thread refreshing subscribed RSS feeds
+   */
+  private final static String SCHEDULER_THREAD_NAME = "Asynchronous RSS feed scheduler";
+
   /**
    * Arrange incoming load requests on this queue.
    */
@@ -90,6 +137,49 @@ public class RSSLoader {
    */
   private boolean stopped;
 
+  /**
+   * Configuration of the RSS readers and parsers used by the workers.
+   */
+  final RSSConfig config;
+
+  /**
+   * Counts down once for each worker which has finished.
+   */
+  private final CountDownLatch terminated;
+
+  /**
+   * Number of workers which have not finished yet.
+   */
+  private final AtomicInteger running;
+
+  /**
+   * Subscribed RSS feeds by URI.
+   */
+  private final ConcurrentMap<String, Subscription> subscriptions =
+      new ConcurrentHashMap<String, Subscription>();
+
+  /**
+   * Subscription refreshes and batch deadlines ordered by when they are due.
+   */
+  private final DelayQueue<Timed> schedule = new DelayQueue<Timed>();
+
+  /**
+   * Set once the scheduler thread has been started.
+   */
+  private final AtomicBoolean scheduling = new AtomicBoolean();
+
+  /**
+   * Loads which are shared with further loads of the same URI, or
+   * {@code null} if loads are not coalesced.
+   */
+  private final ConcurrentMap<String, RSSFuture> coalesced;
+
+  /**
+   * Per-host limits on concurrent loads and request rate, or {@code null} if
+   * hosts are not limited.
+   */
+  private final HostThrottle throttle;
+
   /**
    * Create an object which can load RSS feeds asynchronously in FIFO order.
    * 
@@ -128,6 +218,123 @@ public class RSSLoader {
     return new RSSLoader(new PriorityBlockingQueue<RSSFuture>(capacity));
   }
 
+  /**
+   * Create an object which can load RSS feeds asynchronously in FIFO order
+   * using the specified number of worker threads. Each worker has its own
+   * {@link RSSReader}.
+   * 
+   * @param config configuration of the RSS readers and parsers
+   * @param capacity
+   *          expected number of URIs to be loaded at a given time
+   * @param workers
+   *          number of RSS feeds which are loaded concurrently
+   */
+  public static RSSLoader fifo(RSSConfig config, int capacity, int workers) {
+    return new RSSLoader(new LinkedBlockingQueue<RSSFuture>(capacity), config,
+        workers, null);
+  }
+
+  /**
+   * Create an object which can load RSS feeds asynchronously in FIFO order.
+   * The specified number of workers are run by the given executor, which must
+   * be able to run all of them at the same time. The executor is not shut
+   * down by {@link #stop()}.
+   * 
+   * @param config configuration of the RSS readers and parsers
+   * @param capacity
+   *          expected number of URIs to be loaded at a given time
+   * @param workers
+   *          number of RSS feeds which are loaded concurrently
+   * @param executor
+   *          runs the workers until the loader is stopped
+   */
+  public static RSSLoader fifo(RSSConfig config, int capacity, int workers,
+      Executor executor) {
+    return new RSSLoader(new LinkedBlockingQueue<RSSFuture>(capacity), config,
+        workers, executor);
+  }
+
+  /**
+   * Create an object which can load RSS feeds asynchronously based on priority
+   * using the specified number of worker threads. Each worker has its own
+   * {@link RSSReader}.
+   * 
+   * @param config configuration of the RSS readers and parsers
+   * @param capacity
+   *          expected number of URIs to be loaded at a given time
+   * @param workers
+   *          number of RSS feeds which are loaded concurrently
+   */
+  public static RSSLoader priority(RSSConfig config, int capacity, int workers) {
+    return new RSSLoader(new PriorityBlockingQueue<RSSFuture>(capacity), config,
+        workers, null);
+  }
+
+  /**
+   * Create an object which can load RSS feeds asynchronously based on
+   * priority. The specified number of workers are run by the given executor,
+   * which must be able to run all of them at the same time. The executor is
+   * not shut down by {@link #stop()}.
+   * 
+   * @param config configuration of the RSS readers and parsers
+   * @param capacity
+   *          expected number of URIs to be loaded at a given time
+   * @param workers
+   *          number of RSS feeds which are loaded concurrently
+   * @param executor
+   *          runs the workers until the loader is stopped
+   */
+  public static RSSLoader priority(RSSConfig config, int capacity, int workers,
+      Executor executor) {
+    return new RSSLoader(new PriorityBlockingQueue<RSSFuture>(capacity), config,
+        workers, executor);
+  }
+
+  /**
+   * Create an object which can load RSS feeds asynchronously in FIFO order,
+   * each on a new thread created by the specified factory. Since RSS feed
+   * loading is I/O-bound, a factory of lightweight threads is a good choice
+   * where the platform supports them. At most {@code maxConcurrent} RSS feeds
+   * are loaded at the same time; all loads share one thread-safe
+   * {@link RSSReader} whose connection pool is sized by
+   * {@link RSSConfig#withConnectionLimits(int, int)}.
+   * 
+   * @param config configuration of the RSS reader and parser
+   * @param capacity
+   *          expected number of URIs to be loaded at a given time
+   * @param threads
+   *          creates one thread per RSS feed load
+   * @param maxConcurrent
+   *          maximum number of concurrent loads, or zero if unlimited
+   */
+  public static RSSLoader fifo(RSSConfig config, int capacity,
+      ThreadFactory threads, int maxConcurrent) {
+    return new RSSLoader(new LinkedBlockingQueue<RSSFuture>(capacity), config,
+        threads, maxConcurrent);
+  }
+
+  /**
+   * Create an object which can load RSS feeds asynchronously based on
+   * priority, each on a new thread created by the specified factory. At most
+   * {@code maxConcurrent} RSS feeds are loaded at the same time; all loads
+   * share one thread-safe {@link RSSReader} whose connection pool is sized by
+   * {@link RSSConfig#withConnectionLimits(int, int)}.
+   * 
+   * @param config configuration of the RSS reader and parser
+   * @param capacity
+   *          expected number of URIs to be loaded at a given time
+   * @param threads
+   *          creates one thread per RSS feed load
+   * @param maxConcurrent
+   *          maximum number of concurrent loads, or zero if unlimited
+   * @see #fifo(RSSConfig, int, ThreadFactory, int)
+   */
+  public static RSSLoader priority(RSSConfig config, int capacity,
+      ThreadFactory threads, int maxConcurrent) {
+    return new RSSLoader(new PriorityBlockingQueue<RSSFuture>(capacity), config,
+        threads, maxConcurrent);
+  }
+
   /**
    * Instantiate an object which can load RSS feeds asynchronously. The provided
    * {@link BlockingQueue} implementation determines the load behaviour.
@@ -136,11 +343,67 @@ public class RSSLoader {
    * @see PriorityBlockingQueue
    */
   RSSLoader(BlockingQueue<RSSFuture> in) {
+    this(in, new RSSConfig(), 1, null);
+  }
+
+  /**
+   * Instantiate an object which can load RSS feeds asynchronously with the
+   * specified number of workers. If {@code executor} is {@code null}, each
+   * worker runs on a new thread.
+   */
+  RSSLoader(BlockingQueue<RSSFuture> in, RSSConfig config, int workers,
+      Executor executor) {
+    this(in, config, workers);
+
+    // start workers for loading of RSS feeds which share a connection pool
+    final RSSReader reader = new RSSReader(config);
+    for (int i = 0; i < workers; i++) {
+      final Loader loader = new Loader(reader);
+      if (executor == null) {
+        final String name = workers == 1 ? DEFAULT_THREAD_NAME
+            : DEFAULT_THREAD_NAME + " #" + (i + 1);
+        new Thread(loader, name).start();
+      } else {
+        executor.execute(loader);
+      }
+    }
+  }
+
+  /**
+   * Instantiate an object which loads each RSS feed on a new thread created by
+   * the specified factory. Unless {@code maxConcurrent} is zero, it bounds the
+   * number of concurrent loads.
+   */
+  RSSLoader(BlockingQueue<RSSFuture> in, RSSConfig config,
+      ThreadFactory threads, int maxConcurrent) {
+    this(in, config, /* dispatcher */1);
+
+    if (threads == null) {
+      throw new IllegalArgumentException("Thread factory must not be null.");
+    } else if (maxConcurrent < 0) {
+      throw new IllegalArgumentException("Maximum number of concurrent loads must not be negative.");
+    }
+
+    final int permits = maxConcurrent == 0 ? Integer.MAX_VALUE : maxConcurrent;
+    final RSSReader reader = new RSSReader(config);
+    new Thread(new Dispatcher(reader, threads, permits), DEFAULT_THREAD_NAME).start();
+  }
+
+  private RSSLoader(BlockingQueue<RSSFuture> in, RSSConfig config, int workers) {
+    if (config == null) {
+      throw new IllegalArgumentException("RSS configuration must not be null.");
+    } else if (workers < 1) {
+      throw new IllegalArgumentException("Number of workers must be positive.");
+    }
+
     this.in = in;
     this.out = new LinkedBlockingQueue<RSSFuture>();
-
-    // start separate thread for loading of RSS feeds
-    new Thread(new Loader(new RSSReader()), DEFAULT_THREAD_NAME).start();
+    this.config = config;
+    this.terminated = new CountDownLatch(workers);
+    this.running = new AtomicInteger(workers);
+    this.throttle = HostThrottle.isLimited(config) ? new HostThrottle(config) : null;
+    this.coalesced = config.coalesceMillis < 0 ? null
+        : new ConcurrentHashMap<String, RSSFuture>();
   }
 
   /**
@@ -165,6 +428,29 @@ public class RSSLoader {
     // flag writings happen-before enqueue
     stopped = true;
     in.offer(SENTINEL);
+
+    // wake up the scheduler so that it stops too
+    subscriptions.clear();
+    schedule.add(Timed.STOP);
+  }
+
+  /**
+   * Blocks until all workers have finished after a {@link #stop()} request,
+   * or the timeout occurs, or the current thread is interrupted, whichever
+   * happens first.
+   * 
+   * @param timeout
+   *          the maximum time to wait
+   * @param unit
+   *          the time unit of the timeout argument
+   * @return {@code true} if all workers have finished, {@code false} if the
+   *         timeout elapsed before
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit)
+      throws InterruptedException {
+    return terminated.await(timeout, unit);
   }
 
   /**
@@ -186,7 +472,7 @@ public class RSSLoader {
    * @return Future representing the RSS feed scheduled for loading,
    *         {@code null} if scheduling failed
    */
-  public Future<RSSFeed> load(String uri) {
+  public RSSLoadFuture load(String uri) {
     return load(uri, RSSFuture.DEFAULT_PRIORITY);
   }
 
@@ -201,7 +487,15 @@ public class RSSLoader {
    * called.
    * <p>
    * Completed RSS feed loads can be retrieved by calling {@link #take()}.
-   * Alternatively, non-blocking polling is possible with {@link #poll()}.
+   * Alternatively, non-blocking polling is possible with {@link #poll()}, and
+   * callbacks can be registered with {@link RSSLoadFuture#addCallback}.
+   * <p>
+   * If loads are coalesced with {@link RSSConfig#withCoalescing(long)}, a
+   * load of a URI which is already queued, being loaded or has been loaded
+   * recently returns the existing Future, which keeps its priority and may
+   * already be done. The shared Future is retrieved by {@link #take()} once
+   * for each such call, and cancelling it cancels the load for all callers
+   * sharing it.
    * 
    * @param uri
    *          RSS feed URI to be loaded
@@ -211,7 +505,127 @@ public class RSSLoader {
    * @return Future representing the RSS feed scheduled for loading,
    *         {@code null} if scheduling failed
    */
-  public Future<RSSFeed> load(String uri, int priority) {
+  public RSSLoadFuture load(String uri, int priority) {
+    return enqueue(uri, priority, /* deliver */true, /* callback */null);
+  }
+
+  /**
+   * Loads the specified RSS feed URI asynchronously and passes the result to
+   * the specified callback instead of placing it on the completion queue
+   * retrieved by {@link #take()} and {@link #poll()}. The callback is
+   * invoked on the thread which completes the load, so no thread waits for
+   * the RSS feed.
+   * <p>
+   * If the RSS feed URI cannot be scheduled for loading, the callback
+   * receives a {@link RejectedExecutionException} right away and
+   * {@code null} is returned.
+   * 
+   * @param uri
+   *          RSS feed URI to be loaded
+   * @param priority
+   *          larger integer gives higher priority
+   * @param callback
+   *          receives the RSS feed or the error of the load
+   * 
+   * @return Future representing the RSS feed scheduled for loading,
+   *         {@code null} if scheduling failed
+   * @see #load(String, int)
+   */
+  public RSSLoadFuture load(String uri, int priority, RSSCallback callback) {
+    if (callback == null) {
+      throw new IllegalArgumentException("Callback must not be null.");
+    }
+
+    final RSSFuture future = enqueue(uri, priority, /* deliver */false, callback);
+    if (future == null) {
+      callback.onFailed(uri, new RejectedExecutionException(
+          "RSS feed could not be scheduled for loading"));
+    }
+    return future;
+  }
+
+  /**
+   * Loads the specified RSS feed URIs asynchronously and returns a handle
+   * which completes once every RSS feed has been loaded or has failed. The
+   * RSS feeds are not placed on the completion queue retrieved by
+   * {@link #take()} and {@link #poll()}.
+   *
+   * @param uris
+   *          RSS feed URIs to be loaded; duplicates are loaded once
+   * @see #loadAll(Collection, long, TimeUnit)
+   */
+  public RSSBatch loadAll(Collection<String> uris) {
+    return loadAll(uris, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Loads the specified RSS feed URIs asynchronously and returns a handle
+   * which completes once every RSS feed has been loaded, has failed or has
+   * timed out. When the timeout elapses, loads which have not started yet
+   * are cancelled and loads in progress are aborted; both are reported as
+   * {@link RSSBatch.Outcome#TIMED_OUT}. URIs which cannot be scheduled for
+   * loading fail with a {@link RejectedExecutionException}.
+   * <p>
+   * The RSS feeds are not placed on the completion queue retrieved by
+   * {@link #take()} and {@link #poll()}. If loads are coalesced with
+   * {@link RSSConfig#withCoalescing(long)}, the batch may share loads with
+   * other callers, and a timeout cancels such loads for them too.
+   *
+   * @param uris
+   *          RSS feed URIs to be loaded; duplicates are loaded once
+   * @param timeout
+   *          maximum time until the batch completes, or zero if unlimited
+   * @param unit
+   *          time unit of the timeout argument
+   */
+  public RSSBatch loadAll(Collection<String> uris, long timeout, TimeUnit unit) {
+    if (uris == null) {
+      throw new IllegalArgumentException("RSS feed URIs must not be null.");
+    } else if (timeout < 0) {
+      throw new IllegalArgumentException("Timeout must not be negative.");
+    }
+
+    final Set<String> unique = new LinkedHashSet<String>(uris);
+    if (unique.contains(null)) {
+      throw new IllegalArgumentException("RSS feed URI must not be null.");
+    }
+
+    final Map<String, RSSFuture> futures = new LinkedHashMap<String, RSSFuture>();
+    for (String uri : unique) {
+      futures.put(uri, enqueue(uri, RSSFuture.DEFAULT_PRIORITY, /* deliver */false,
+          /* callback */null));
+    }
+
+    final RSSBatch batch = new RSSBatch(futures);
+    batch.start();
+    if (timeout > 0 && !batch.isDone()) {
+      final Timed deadline = new Timed() {
+        @Override
+        public void run() {
+          batch.expire();
+        }
+      };
+      deadline.due = System.currentTimeMillis() + unit.toMillis(timeout);
+      schedule(deadline);
+
+      // a batch which completes early must not leave its deadline behind
+      batch.whenDone(new Runnable() {
+        @Override
+        public void run() {
+          schedule.remove(deadline);
+        }
+      });
+    }
+    return batch;
+  }
+
+  /**
+   * Enqueues a load of the RSS feed URI, or returns a load which it shares.
+   * The callback, if any, is registered before the load can complete.
+   * Returns {@code null} if the load cannot be scheduled.
+   */
+  private RSSFuture enqueue(String uri, int priority, boolean deliver,
+      RSSCallback callback) {
     if (uri == null) {
       throw new IllegalArgumentException("RSS feed URI must not be null.");
     }
@@ -221,27 +635,156 @@ public class RSSLoader {
       return null;
     }
 
-    // flag readings happen-after enqueue
     final RSSFuture future = new RSSFuture(uri, priority);
+    future.loader = this;
+    if (!deliver) {
+      future.deliveries = 0;
+    }
+    if (callback != null) {
+      future.addCallback(callback);
+    }
+    if (coalesced != null) {
+      final RSSFuture shared = coalesce(future);
+      if (shared != null) {
+        if (deliver && shared.deliverLater()) {
+          // the shared load has already been delivered to other callers
+          out.add(shared);
+        }
+        if (callback != null) {
+          shared.addCallback(callback);
+        }
+        return shared;
+      }
+    }
+
+    // flag readings happen-after enqueue
     final boolean ok = in.offer(future);
 
     if (!ok || stopped) {
+      uncoalesce(future);
       return null;
     }
 
     return future;
   }
 
+  /**
+   * Returns the load of the same URI which the specified load can share, or
+   * registers the specified load for sharing and returns {@code null}.
+   */
+  private RSSFuture coalesce(RSSFuture future) {
+    while (true) {
+      final RSSFuture existing = coalesced.get(future.uri);
+      if (existing != null && isShareable(existing)) {
+        return existing;
+      }
+
+      if (existing == null ? coalesced.putIfAbsent(future.uri, future) == null
+          : coalesced.replace(future.uri, existing, future)) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the load has not been cancelled and is either in
+   * progress or has succeeded within the freshness window.
+   */
+  private boolean isShareable(RSSFuture future) {
+    switch (future.status.get()) {
+    case RSSFuture.READY:
+    case RSSFuture.LOADING:
+      return true;
+    case RSSFuture.LOADED:
+      return future.loaded != 0L
+          && System.currentTimeMillis() - future.loaded <= config.coalesceMillis;
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * Removes a cancelled load which has not started from the queue, or from
+   * the parked loads of its host.
+   */
+  void discard(RSSFuture future) {
+    if (!in.remove(future) && throttle != null) {
+      throttle.remove(future);
+    }
+    uncoalesce(future);
+  }
+
+  /**
+   * Stops sharing the load with further loads of the same URI.
+   */
+  private void uncoalesce(RSSFuture future) {
+    if (coalesced != null) {
+      coalesced.remove(future.uri, future);
+    }
+  }
+
+  /**
+   * Subscribes to the specified RSS feed URI. The RSS feed is loaded
+   * immediately and then refreshed periodically until
+   * {@link #unsubscribe(String)} or {@link #stop()} is called. Each refresh is
+   * a conditional load whose result can be retrieved with {@link #take()} or
+   * {@link #poll()} unless the RSS feed has not been modified.
+   * <p>
+   * The interval between refreshes adapts to the average time between the
+   * &lt;pubDate&gt; of new RSS items, is no shorter than the &lt;ttl&gt;
+   * element, and doubles after each refresh which found no new RSS items.
+   * The hours and days listed in the &lt;skipHours&gt; and &lt;skipDays&gt;
+   * elements are skipped. The bounds of the interval are configured with
+   * {@link RSSConfig#withRefreshInterval(long, long, long)}. Pending refreshes are
+   * kept in a {@link DelayQueue}, so a single scheduler thread sleeps until
+   * the next one is due however many RSS feeds are subscribed.
+   *
+   * @param uri
+   *          RSS feed URI to be refreshed periodically
+   * @return {@code true} if the RSS feed has been subscribed, {@code false}
+   *         if it is already subscribed or this loader has been stopped
+   */
+  public boolean subscribe(String uri) {
+    if (uri == null) {
+      throw new IllegalArgumentException("RSS feed URI must not be null.");
+    }
+
+    if (stopped) {
+      return false;
+    }
+
+    final Subscription subscription = new Subscription(uri);
+    if (subscriptions.putIfAbsent(uri, subscription) != null) {
+      return false;
+    }
+
+    subscription.due = System.currentTimeMillis();
+    schedule(subscription);
+    return true;
+  }
+
+  /**
+   * Stops refreshing the specified RSS feed URI. A load which is already in
+   * progress is completed.
+   *
+   * @return {@code true} if the RSS feed has been subscribed
+   */
+  public boolean unsubscribe(String uri) {
+    return subscriptions.remove(uri) != null;
+  }
+
   /**
    * Retrieves and removes the next Future representing the result of loading an
-   * RSS feed, waiting if none are yet present.
+   * RSS feed, waiting if none are yet present. Loads which failed are
+   * retrieved as well; their {@link Future#get()} throws an
+   * {@link ExecutionException}.
    * 
    * @return the {@link Future} representing the loaded RSS feed
    * 
    * @throws InterruptedException
    *           if interrupted while waiting
    */
-  public Future<RSSFeed> take() throws InterruptedException {
+  public RSSLoadFuture take() throws InterruptedException {
     return out.take();
   }
 
@@ -255,7 +798,7 @@ public class RSSLoader {
    * @throws InterruptedException
    *           if interrupted while waiting
    */
-  public Future<RSSFeed> poll() {
+  public RSSLoadFuture poll() {
     return out.poll();
   }
 
@@ -274,10 +817,114 @@ public class RSSLoader {
    * @throws InterruptedException
    *           if interrupted while waiting
    */
-  public Future<RSSFeed> poll(long timeout, TimeUnit unit) throws InterruptedException {
+  public RSSLoadFuture poll(long timeout, TimeUnit unit) throws InterruptedException {
     return out.poll(timeout, unit);
   }
 
+  /**
+   * Loads the RSS feed of the specified future unless it has been cancelled.
+   * Must not be called more than once per future.
+   */
+  void execute(RSSFuture future, RSSReader reader) {
+    try {
+      load(future, reader);
+    } finally {
+      // failed loads are never shared once done, and successful loads only
+      // until they are no longer fresh
+      if (future.loaded == 0L || config.coalesceMillis == 0L) {
+        uncoalesce(future);
+      } else if (coalesced != null) {
+        final Expiry expiry = new Expiry(future);
+        expiry.due = future.loaded + config.coalesceMillis;
+        schedule(expiry);
+      }
+      release(future);
+      future.completed();
+    }
+  }
+
+  /**
+   * Returns the next RSS feed load which may start, or the sentinel once all
+   * loads have been started. Loads whose host is at its limit are parked
+   * while other hosts are served, and are started as soon as their host
+   * permits.
+   */
+  RSSFuture next() throws InterruptedException {
+    if (throttle == null) {
+      return in.take();
+    }
+
+    while (true) {
+      final RSSFuture parked = throttle.poll(System.currentTimeMillis());
+      if (parked != null) {
+        return parked;
+      }
+
+      final long delay = throttle.delay(System.currentTimeMillis());
+      final RSSFuture future = delay == Long.MAX_VALUE ? in.take()
+          : in.poll(delay, TimeUnit.MILLISECONDS);
+
+      if (future == SENTINEL) {
+        // start the parked loads before stopping
+        final RSSFuture last = throttle.await();
+        if (last == null) {
+          return SENTINEL;
+        }
+        in.offer(SENTINEL);
+        return last;
+      } else if (future != null && future != WAKEUP
+          && throttle.acquire(future, System.currentTimeMillis())) {
+        return future;
+      }
+    }
+  }
+
+  /**
+   * Releases the host of a started load, and wakes up a consumer if parked
+   * loads might start now.
+   */
+  private void release(RSSFuture future) {
+    if (throttle != null && throttle.release(future)) {
+      in.offer(WAKEUP);
+    }
+  }
+
+  private void load(RSSFuture future, RSSReader reader) {
+    if (future.status.compareAndSet(RSSFuture.READY, RSSFuture.LOADING)) {
+      boolean modified = true;
+      try {
+        // perform loading outside of locked region
+        final RSSFeed feed = reader.load(future.uri, future.conditional,
+            future.revalidate, future.abort);
+
+        // set successfully loaded RSS feed
+        future.set(feed, /* error */null);
+        future.loaded = System.currentTimeMillis();
+      } catch (RSSNotModifiedException e) {
+        future.set(/* feed */null, e);
+        modified = !future.conditional;
+      } catch (RSSException e) {
+        // throw ExecutionException when calling RSSFuture::get()
+        future.set(/* feed */null, e);
+      } catch (RuntimeException e) {
+        // e.g. RSSFault or a malformed URI
+        future.set(/* feed */null, e);
+      } finally {
+        // RSSFuture::isDone() returns true even if an error occurred
+        future.status.compareAndSet(RSSFuture.LOADING, RSSFuture.LOADED);
+      }
+
+      // enable callers to consume the loaded RSS feed or its error, except
+      // for subscription refreshes which found no changes
+      final int deliveries = future.settle();
+      if (modified && !future.isCancelled()) {
+        for (int i = 0; i < deliveries; i++) {
+          out.add(future);
+        }
+      }
+    }
+  }
+
   /**
    * Internal consumer of RSS feed URIs stored in the blocking queue.
    */
@@ -291,37 +938,124 @@ public class RSSLoader {
 
     /**
      * Keep on loading RSS feeds by dequeuing incoming tasks until the sentinel
-     * is encountered.
+     * is encountered. The sentinel is put back so that the other workers stop
+     * too.
      */
     @Override
     public void run() {
       try {
         RSSFuture future = null;
-        RSSFeed feed;
-        while ((future = in.take()) != SENTINEL) {
-
-          if (future.status.compareAndSet(RSSFuture.READY, RSSFuture.LOADING)) {
-            try {
-              // perform loading outside of locked region
-              feed = reader.load(future.uri);
-
-              // set successfully loaded RSS feed
-              future.set(feed, /* error */null);
-
-              // enable caller to consume the loaded RSS feed
-              out.add(future);
-            } catch (RSSException e) {
-              // throw ExecutionException when calling RSSFuture::get()
-              future.set(/* feed */null, e);
-            } catch (RSSFault e) {
-              // throw ExecutionException when calling RSSFuture::get()
-              future.set(/* feed */null, e);
-            } finally {
-              // RSSFuture::isDone() returns true even if an error occurred
-              future.status.compareAndSet(RSSFuture.LOADING, RSSFuture.LOADED);
+        while ((future = next()) != SENTINEL) {
+          execute(future, reader);
+        }
+
+        // wake up the next worker
+        in.offer(SENTINEL);
+      } catch (InterruptedException e) {
+        // Restore the interrupted status
+        Thread.currentThread().interrupt();
+      } finally {
+        // the last worker releases the shared connection pool
+        if (running.decrementAndGet() == 0) {
+          reader.close();
+        }
+        terminated.countDown();
+      }
+    }
+
+  }
+
+  /**
+   * Internal consumer of RSS feed URIs which loads each RSS feed on its own
+   * thread. The number of concurrent loads is bounded by a semaphore.
+   */
+  class Dispatcher implements Runnable {
+
+    private final RSSReader reader;
+    private final ThreadFactory threads;
+    private final Semaphore permits;
+    private final int maxPermits;
+
+    Dispatcher(RSSReader reader, ThreadFactory threads, int maxConcurrent) {
+      this.reader = reader;
+      this.threads = threads;
+      this.maxPermits = maxConcurrent;
+      this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Keep on starting a thread per dequeued task until the sentinel is
+     * encountered. Then wait for all loads in progress to complete.
+     */
+    @Override
+    public void run() {
+      try {
+        RSSFuture future = null;
+        while ((future = next()) != SENTINEL) {
+          permits.acquire();
+
+          final RSSFuture task = future;
+          final Thread thread = threads.newThread(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                execute(task, reader);
+              } finally {
+                permits.release();
+              }
             }
+          });
+
+          if (thread == null) {
+            permits.release();
+            release(task);
+            uncoalesce(task);
+            if (task.status.compareAndSet(RSSFuture.READY, RSSFuture.LOADED)) {
+              task.set(null, new RejectedExecutionException(
+                  "Thread factory rejected RSS feed load"));
+            }
+            task.completed();
+          } else {
+            thread.start();
           }
+        }
 
+        // wait until all loads in progress have released their permits
+        permits.acquire(maxPermits);
+      } catch (InterruptedException e) {
+        // Restore the interrupted status
+        Thread.currentThread().interrupt();
+      } finally {
+        reader.close();
+        terminated.countDown();
+      }
+    }
+
+  }
+
+  /**
+   * Internal runner of timed tasks: it enqueues subscribed RSS feeds when they
+   * are due and expires the deadlines of batches. Once the loader has been
+   * stopped, subscriptions are dropped but pending deadlines still expire.
+   */
+  class Scheduler implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        Timed task = null;
+        while ((task = schedule.take()) != Timed.STOP) {
+          task.run();
+        }
+
+        for (Iterator<Timed> i = schedule.iterator(); i.hasNext();) {
+          final Timed pending = i.next();
+          if (pending instanceof Subscription || pending instanceof Expiry) {
+            i.remove();
+          }
+        }
+        while (!schedule.isEmpty()) {
+          schedule.take().run();
         }
       } catch (InterruptedException e) {
         // Restore the interrupted status
@@ -331,15 +1065,171 @@ public class RSSLoader {
 
   }
 
+  /**
+   * Returns the number of scheduled refreshes and deadlines.
+   */
+  int scheduled() {
+    return schedule.size();
+  }
+
+  /**
+   * Starts the scheduler thread unless it is running already.
+   */
+  private void schedule(Timed task) {
+    if (scheduling.compareAndSet(false, true)) {
+      final Thread thread = new Thread(new Scheduler(), SCHEDULER_THREAD_NAME);
+      // pending refreshes and deadlines must not keep the JVM alive
+      thread.setDaemon(true);
+      thread.start();
+    }
+    schedule.add(task);
+  }
+
+  /**
+   * Enqueues a load of the subscribed RSS feed which schedules the next
+   * refresh once it has completed.
+   */
+  private void refresh(final Subscription subscription) {
+    final RSSFuture future = new RSSFuture(subscription.uri,
+        RSSFuture.DEFAULT_PRIORITY);
+    // unchanged RSS feeds are not delivered again
+    future.conditional = subscription.feed != null;
+    future.revalidate = true;
+    future.whenCompleted(new Runnable() {
+      @Override
+      public void run() {
+        reschedule(subscription, future.feed);
+      }
+    });
+
+    if (!in.offer(future)) {
+      reschedule(subscription, null);
+    }
+  }
+
+  /**
+   * Schedules the next refresh unless the RSS feed has been unsubscribed.
+   * The RSS feed is {@code null} if it has not been modified or failed to
+   * load.
+   */
+  private void reschedule(Subscription subscription, RSSFeed feed) {
+    subscription.rate.update(feed);
+    if (feed != null) {
+      subscription.feed = feed;
+    }
+
+    if (!stopped && subscriptions.get(subscription.uri) == subscription) {
+      subscription.due = RefreshTimes.next(subscription.feed,
+          subscription.rate, System.currentTimeMillis(), config);
+      schedule.add(subscription);
+    }
+  }
+
+  /**
+   * Internal task which the scheduler thread runs at a certain time. The due
+   * time must not change while the task is scheduled.
+   */
+  abstract static class Timed implements Delayed, Runnable {
+
+    /**
+     * Internal sentinel to stop the scheduler thread. It is due immediately.
+     */
+    static final Timed STOP = new Timed() {
+      @Override
+      public void run() {}
+    };
+
+    /**
+     * Time in milliseconds when the task is run.
+     */
+    volatile long due;
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(due - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Orders tasks by due time without subtracting, which could overflow.
+     */
+    @Override
+    public int compareTo(Delayed other) {
+      if (other instanceof Timed) {
+        final long theirs = ((Timed) other).due;
+        return due < theirs ? -1 : (due > theirs ? 1 : 0);
+      }
+
+      final long mine = getDelay(TimeUnit.MILLISECONDS);
+      final long theirs = other.getDelay(TimeUnit.MILLISECONDS);
+      return mine < theirs ? -1 : (mine > theirs ? 1 : 0);
+    }
+
+  }
+
+  /**
+   * Stops sharing a successful load once it is no longer fresh, so that the
+   * loaded RSS feed can be garbage collected.
+   */
+  final class Expiry extends Timed {
+
+    private final RSSFuture future;
+
+    Expiry(RSSFuture future) {
+      this.future = future;
+    }
+
+    @Override
+    public void run() {
+      uncoalesce(future);
+    }
+
+  }
+
+  /**
+   * Subscribed RSS feed which is refreshed when it is due.
+   */
+  final class Subscription extends Timed {
+
+    final String uri;
+
+    /**
+     * Estimate of how often the RSS feed publishes new RSS items.
+     */
+    final PublishRate rate = new PublishRate();
+
+    /**
+     * Most recently loaded RSS feed, or {@code null} if none.
+     */
+    volatile RSSFeed feed;
+
+    Subscription(String uri) {
+      this.uri = uri;
+    }
+
+    @Override
+    public void run() {
+      if (!stopped && subscriptions.get(uri) == this) {
+        refresh(this);
+      }
+    }
+
+  }
+
   /**
    * Internal sentinel to stop the thread that is loading RSS feeds.
    */
   private final static RSSFuture SENTINEL = new RSSFuture(null, /* priority */7);
 
+  /**
+   * Internal marker to wake up a thread waiting for loads so that it starts
+   * parked loads whose host has become available.
+   */
+  private final static RSSFuture WAKEUP = new RSSFuture(null, RSSFuture.DEFAULT_PRIORITY);
+
   /**
    * Offer callers control over the asynchronous loading of an RSS feed.
    */
-  static class RSSFuture implements Future<RSSFeed>, Comparable<RSSFuture> {
+  static class RSSFuture implements RSSLoadFuture, Comparable<RSSFuture> {
 
     static final int DEFAULT_PRIORITY = 3;
     static final int READY = 0;
@@ -355,19 +1245,122 @@ public class RSSLoader {
 
     AtomicInteger status;
 
-    boolean waiting;
+    /** Set once the RSS feed or the error has been set */
+    private boolean resolved;
     RSSFeed feed;
     Exception cause;
 
+    /**
+     * Internal hooks which are run once the load has finished, failed or been
+     * cancelled; {@code null} if none have been added yet.
+     */
+    private List<Runnable> completions;
+
+    /**
+     * Set once the completion hooks have run.
+     */
+    private boolean completed;
+
+    /**
+     * Number of times the result is placed on the completion queue of the
+     * loader, once for each caller which shares the load and retrieves it
+     * with {@link RSSLoader#take()}. Guarded by this future.
+     */
+    int deliveries = 1;
+
+    /**
+     * Set once the result has been placed on the completion queue. Guarded
+     * by this future.
+     */
+    private boolean settled;
+
+    /**
+     * Whether the RSS feed is only loaded if it has been modified. Must be
+     * set before the future is enqueued.
+     */
+    boolean conditional;
+
+    /**
+     * Whether the HTTP cache validators of the response are kept for later
+     * conditional loads. Must be set before the future is enqueued.
+     */
+    boolean revalidate;
+
+    /**
+     * Host whose limits apply to this load, set by {@link HostThrottle}.
+     */
+    String host;
+
+    /**
+     * Loader from whose queue the future is removed when cancelled, or
+     * {@code null} if none.
+     */
+    RSSLoader loader;
+
+    /**
+     * Aborts the HTTP request when cancelled while loading.
+     */
+    final Abort abort = new Abort();
+
+    /**
+     * Time in milliseconds when the RSS feed was loaded successfully, or zero
+     * if it has not been.
+     */
+    volatile long loaded;
+
     RSSFuture(String uri, int priority) {
       this.uri = uri;
       this.priority = priority;
       status = new AtomicInteger(READY);
     }
 
+    /**
+     * Requests one more delivery to the completion queue of the loader.
+     *
+     * @return {@code true} if the result has been delivered already, in which
+     *         case the caller must deliver it once more itself
+     */
+    synchronized boolean deliverLater() {
+      if (settled) {
+        return true;
+      }
+      deliveries++;
+      return false;
+    }
+
+    /**
+     * Returns how often the result must be delivered now that it is
+     * available. Subsequent requests are answered by
+     * {@link #deliverLater()}.
+     */
+    synchronized int settle() {
+      settled = true;
+      return deliveries;
+    }
+
+    /**
+     * Cancels the load. A load which has not started is removed from the
+     * queue. If {@code mayInterruptIfRunning}, a load in progress is aborted
+     * too: its HTTP request is aborted, which closes the connection and stops
+     * parsing. Either way, completion callbacks run before this method
+     * returns.
+     */
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
-      return isCancelled() || status.compareAndSet(READY, CANCELLED);
+      if (isCancelled()) {
+        return true;
+      } else if (status.compareAndSet(READY, CANCELLED)) {
+        if (loader != null) {
+          loader.discard(this);
+        }
+        completed();
+        return true;
+      } else if (mayInterruptIfRunning && status.compareAndSet(LOADING, CANCELLED)) {
+        abort.abort();
+        completed();
+        return true;
+      }
+      return false;
     }
 
     @Override
@@ -382,66 +1375,129 @@ public class RSSLoader {
 
     @Override
     public synchronized RSSFeed get() throws InterruptedException, ExecutionException {
-      if (feed == null && cause == null) {
-        try {
-          waiting = true;
+      // guard against spurious wakeups
+      while (!resolved && !isCancelled()) {
+        wait();
+      }
+      return result();
+    }
 
-          // guard against spurious wakeups
-          while (waiting) {
-            wait();
-          }
-        } finally {
-          waiting = false;
+    @Override
+    public synchronized RSSFeed get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      long remaining = unit.toNanos(timeout);
+      final long deadline = System.nanoTime() + remaining;
+
+      // guard against spurious wakeups by waiting for the remaining time only
+      while (!resolved && !isCancelled()) {
+        if (remaining <= 0) {
+          throw new TimeoutException("RSS feed loading timed out");
         }
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        remaining = deadline - System.nanoTime();
       }
+      return result();
+    }
 
-      if (cause != null) {
+    private RSSFeed result() throws ExecutionException {
+      if (isCancelled()) {
+        throw new CancellationException("RSS feed loading was cancelled");
+      } else if (cause != null) {
         throw new ExecutionException(cause);
       }
-
       return feed;
     }
 
     @Override
-    public synchronized RSSFeed get(long timeout, TimeUnit unit)
-        throws InterruptedException, ExecutionException, TimeoutException {
+    public String getURI() {
+      return uri;
+    }
 
-      if (feed == null && cause == null) {
-        try {
-          waiting = true;
+    @Override
+    public void addCallback(final RSSCallback callback) {
+      if (callback == null) {
+        throw new IllegalArgumentException("Callback must not be null.");
+      }
 
-          final long timeoutMillis = unit.toMillis(timeout);
-          final long startMillis = System.currentTimeMillis();
+      whenCompleted(new Runnable() {
+        @Override
+        public void run() {
+          final RSSFeed result;
+          final Exception error;
+          synchronized (RSSFuture.this) {
+            result = feed;
+            error = isCancelled() ? new CancellationException(
+                "RSS feed loading was cancelled") : cause;
+          }
 
-          // guard against spurious wakeups
-          while (waiting) {
-            wait(timeoutMillis);
+          if (error == null) {
+            callback.onLoaded(uri, result);
+          } else {
+            callback.onFailed(uri, error);
+          }
+        }
+      });
+    }
 
-            // check timeout
-            if (System.currentTimeMillis() - startMillis > timeoutMillis) {
-              throw new TimeoutException("RSS feed loading timed out");
-            }
+    /**
+     * Runs the hook once the load has completed, or immediately if it has
+     * completed already.
+     */
+    void whenCompleted(Runnable hook) {
+      synchronized (this) {
+        if (!completed) {
+          if (completions == null) {
+            completions = new ArrayList<Runnable>(2);
           }
-        } finally {
-          waiting = false;
+          completions.add(hook);
+          return;
         }
       }
+      run(hook);
+    }
 
-      if (cause != null) {
-        throw new ExecutionException(cause);
+    /**
+     * Runs the completion hooks unless they have run already.
+     */
+    void completed() {
+      final List<Runnable> hooks;
+      synchronized (this) {
+        if (completed) {
+          return;
+        }
+        completed = true;
+        hooks = completions;
+        completions = null;
+
+        // wake up callers of get() on a cancelled future
+        notifyAll();
       }
 
-      return feed;
+      if (hooks != null) {
+        for (Runnable hook : hooks) {
+          run(hook);
+        }
+      }
+    }
+
+    /**
+     * Runs the hook and reports its failure to the uncaught exception handler
+     * of the current thread, which therefore keeps on loading RSS feeds.
+     */
+    private static void run(Runnable hook) {
+      try {
+        hook.run();
+      } catch (RuntimeException e) {
+        final Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+      }
     }
 
     synchronized void set(RSSFeed feed, Exception cause) {
       this.feed = feed;
       this.cause = cause;
-
-      if (waiting) {
-        waiting = false;
-        notifyAll();
-      }
+      this.resolved = true;
+      notifyAll();
     }
 
     @Override
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Contingency exception raised when an RSS feed has not changed since it was
+ * last retrieved. The HTTP status of such exceptions is always 304.
+ * 
+ * @author Mr Horn
+ * @see RSSReader#loadIfModified(String)
+ */
+public class RSSNotModifiedException extends RSSReaderException {
+
+  /**
+   * Unsupported serialization
+   */
+  private static final long serialVersionUID = 1L;
+
+  public RSSNotModifiedException(String message) {
+    super(org.apache.http.HttpStatus.SC_NOT_MODIFIED, message);
+  }
+
+}
@@ -32,12 +32,31 @@ import org.xml.sax.XMLReader;
  * 
  * @author Mr Horn
  */
-public class RSSParser implements RSSParserSPI {
+public class RSSParser implements RSSStreamParserSPI {
 
   private final RSSConfig config;
 
+  /**
+   * If not {@code null}, XML readers and SAX handlers are reused per thread.
+   */
+  private final ThreadLocal<Worker> workers;
+
+  /**
+   * XML reader and SAX handler which are reused across parses on one thread.
+   */
+  private static final class Worker {
+    final XMLReader xmlreader;
+    final RSSHandler handler;
+
+    Worker(XMLReader xmlreader, RSSHandler handler) {
+      this.xmlreader = xmlreader;
+      this.handler = handler;
+    }
+  }
+
   public RSSParser(RSSConfig config) {
     this.config = config;
+    this.workers = config.reuseParsers ? new ThreadLocal<Worker>() : null;
   }
 
   /**
@@ -50,18 +69,58 @@ public class RSSParser implements RSSParserSPI {
    */
   @Override
   public RSSFeed parse(InputStream feed) {
-    try {
-      // Since SAXParserFactory implementations are not guaranteed to be
-      // thread-safe, a new local object is instantiated.
-      final SAXParserFactory factory = SAXParserFactory.newInstance();
+    return parseFeed(feed, null);
+  }
 
-      // Support Android 1.6 (see Issue 1)
-      factory.setFeature("http://xml.org/sax/features/namespaces", false);
-      factory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+  /**
+   * Parses input stream as RSS feed and passes each RSS item to the specified
+   * listener as soon as it has been parsed. It is the responsibility of the
+   * caller to close the RSS feed input stream.
+   * 
+   * @param feed RSS 2.0 feed input stream
+   * @param listener receives the channel metadata and each RSS item
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  @Override
+  public void parse(InputStream feed, RSSListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("RSS listener must not be null.");
+    }
 
-      final SAXParser parser = factory.newSAXParser();
+    parseFeed(feed, listener);
+  }
 
-      return parse(parser, feed);
+  /**
+   * Parses input stream with either a new or a reused XML reader and SAX
+   * handler. Unless {@code listener} is {@code null}, RSS items are passed to
+   * it rather than being collected in the returned RSS feed.
+   */
+  private RSSFeed parseFeed(InputStream feed, RSSListener listener) {
+    if (feed == null) {
+      throw new IllegalArgumentException("RSS feed must not be null.");
+    }
+
+    try {
+      if (workers == null) {
+        return parse(newXMLReader(), new RSSHandler(config), feed, listener);
+      }
+
+      // Take the worker so that a nested parse on this thread gets its own
+      Worker worker = workers.get();
+      if (worker == null) {
+        worker = new Worker(newXMLReader(), new RSSHandler(config));
+      } else {
+        workers.set(null);
+      }
+
+      final RSSFeed result = parse(worker.xmlreader, worker.handler, feed, listener);
+
+      // A worker is only returned after a successful parse because the XML
+      // reader may be left in an undefined state by an error.
+      worker.handler.reset();
+      workers.set(worker);
+
+      return result;
     } catch (ParserConfigurationException e) {
       throw new RSSFault(e);
     } catch (SAXException e) {
@@ -71,31 +130,43 @@ public class RSSParser implements RSSParserSPI {
     }
   }
 
+  /**
+   * Creates a new XML reader which reports qualified names.
+   */
+  private static XMLReader newXMLReader()
+      throws ParserConfigurationException, SAXException {
+    // Since SAXParserFactory implementations are not guaranteed to be
+    // thread-safe, a new local object is instantiated.
+    final SAXParserFactory factory = SAXParserFactory.newInstance();
+
+    // Support Android 1.6 (see Issue 1)
+    factory.setFeature("http://xml.org/sax/features/namespaces", false);
+    factory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+
+    final SAXParser parser = factory.newSAXParser();
+    return parser.getXMLReader();
+  }
+
   /**
    * Parses input stream as an RSS 2.0 feed.
    * 
    * @return in-memory representation of an RSS feed
-   * @throws IllegalArgumentException if either argument is {@code null}
    */
-  private RSSFeed parse(SAXParser parser, InputStream feed)
-      throws SAXException, IOException {
-    if (parser == null) {
-      throw new IllegalArgumentException("RSS parser must not be null.");
-    } else if (feed == null) {
-      throw new IllegalArgumentException("RSS feed must not be null.");
-    }
-
+  private static RSSFeed parse(XMLReader xmlreader, RSSHandler handler,
+      InputStream feed, RSSListener listener) throws SAXException, IOException {
     // SAX automatically detects the correct character encoding from the stream
     // See also http://www.w3.org/TR/REC-xml/#sec-guessing
     final InputSource source = new InputSource(feed);
-    final XMLReader xmlreader = parser.getXMLReader();
-    final RSSHandler handler = new RSSHandler(config);
 
+    handler.setListener(listener);
     xmlreader.setContentHandler(handler);
-    xmlreader.parse(source);
+    try {
+      xmlreader.parse(source);
+    } catch (RSSHandler.StopParsing e) {
+      // the remainder of the feed is deliberately ignored
+    }
 
     return handler.feed();
   }
 
 }
-
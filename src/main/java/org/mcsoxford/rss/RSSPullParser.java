@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * Thread-safe RSS parser SPI implementation based on XML pull parsing. Unlike
+ * {@link RSSParser}, unsupported elements are skipped together with their
+ * content, and parsing stops as soon as no further RSS items are wanted.
+ * Consequently, elements such as &lt;title&gt; inside an unsupported
+ * &lt;image&gt; element do not affect the RSS feed.
+ * 
+ * @author Mr Horn
+ */
+public class RSSPullParser implements RSSStreamParserSPI {
+
+  private final RSSConfig config;
+
+  /**
+   * If not {@code null}, pull parsers and SAX handlers are reused per thread.
+   */
+  private final ThreadLocal<Worker> workers;
+
+  /**
+   * Pull parser and SAX handler which are reused across parses on one thread.
+   */
+  private static final class Worker {
+    final XmlPullParser pullparser;
+    final RSSHandler handler;
+    final PullAttributes attributes;
+
+    Worker(XmlPullParser pullparser, RSSHandler handler) {
+      this.pullparser = pullparser;
+      this.handler = handler;
+      this.attributes = new PullAttributes(pullparser);
+    }
+  }
+
+  public RSSPullParser(RSSConfig config) {
+    this.config = config;
+    this.workers = config.reuseParsers ? new ThreadLocal<Worker>() : null;
+  }
+
+  /**
+   * Parses input stream as RSS feed. It is the responsibility of the caller to
+   * close the RSS feed input stream.
+   * 
+   * @param feed RSS 2.0 feed input stream
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  @Override
+  public RSSFeed parse(InputStream feed) {
+    return parseFeed(feed, null);
+  }
+
+  /**
+   * Parses input stream as RSS feed and passes each RSS item to the specified
+   * listener as soon as it has been parsed. It is the responsibility of the
+   * caller to close the RSS feed input stream.
+   * 
+   * @param feed RSS 2.0 feed input stream
+   * @param listener receives the channel metadata and each RSS item
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  @Override
+  public void parse(InputStream feed, RSSListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("RSS listener must not be null.");
+    }
+
+    parseFeed(feed, listener);
+  }
+
+  /**
+   * Parses input stream with either a new or a reused pull parser and SAX
+   * handler. Unless {@code listener} is {@code null}, RSS items are passed to
+   * it rather than being collected in the returned RSS feed.
+   */
+  private RSSFeed parseFeed(InputStream feed, RSSListener listener) {
+    if (feed == null) {
+      throw new IllegalArgumentException("RSS feed must not be null.");
+    }
+
+    try {
+      if (workers == null) {
+        return parse(new Worker(newPullParser(), new RSSHandler(config)), feed, listener);
+      }
+
+      // Take the worker so that a nested parse on this thread gets its own
+      Worker worker = workers.get();
+      if (worker == null) {
+        worker = new Worker(newPullParser(), new RSSHandler(config));
+      } else {
+        workers.set(null);
+      }
+
+      final RSSFeed result = parse(worker, feed, listener);
+
+      // A worker is only returned after a successful parse because the pull
+      // parser may be left in an undefined state by an error.
+      worker.handler.reset();
+      workers.set(worker);
+
+      return result;
+    } catch (XmlPullParserException e) {
+      throw new RSSFault(e);
+    } catch (IOException e) {
+      throw new RSSFault(e);
+    }
+  }
+
+  /**
+   * Creates a new pull parser which reports qualified names.
+   */
+  private static XmlPullParser newPullParser() throws XmlPullParserException {
+    final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+    factory.setNamespaceAware(false);
+    return factory.newPullParser();
+  }
+
+  /**
+   * Pulls the events of an RSS 2.0 feed and feeds them to the SAX handler.
+   * 
+   * @return in-memory representation of an RSS feed
+   */
+  private static RSSFeed parse(Worker worker, InputStream feed,
+      RSSListener listener) throws XmlPullParserException, IOException {
+    final XmlPullParser pullparser = worker.pullparser;
+    final RSSHandler handler = worker.handler;
+    final int[] holder = new int[2];
+
+    // The pull parser detects the character encoding from the XML declaration
+    pullparser.setInput(feed, null);
+    handler.setListener(listener);
+
+    try {
+      int event = pullparser.getEventType();
+      while (event != XmlPullParser.END_DOCUMENT) {
+        switch (event) {
+        case XmlPullParser.START_TAG:
+          final String name = pullparser.getName();
+          if (handler.accepts(name)) {
+            handler.startElement(null, null, name, worker.attributes);
+          } else {
+            skip(pullparser);
+          }
+          break;
+        case XmlPullParser.TEXT:
+          final char[] text = pullparser.getTextCharacters(holder);
+          handler.characters(text, holder[0], holder[1]);
+          break;
+        case XmlPullParser.END_TAG:
+          handler.endElement(null, null, pullparser.getName());
+          break;
+        default:
+          break;
+        }
+
+        event = pullparser.next();
+      }
+    } catch (RSSHandler.StopParsing e) {
+      // the remainder of the feed is deliberately not read
+    }
+
+    handler.endDocument();
+    return handler.feed();
+  }
+
+  /**
+   * Skips the current element including all its content without reporting
+   * any events. The pull parser is left on the matching end tag.
+   */
+  private static void skip(XmlPullParser pullparser)
+      throws XmlPullParserException, IOException {
+    int depth = 1;
+    while (depth > 0) {
+      switch (pullparser.next()) {
+      case XmlPullParser.START_TAG:
+        depth++;
+        break;
+      case XmlPullParser.END_TAG:
+        depth--;
+        break;
+      case XmlPullParser.END_DOCUMENT:
+        throw new XmlPullParserException("Unexpected end of document", pullparser, null);
+      default:
+        break;
+      }
+    }
+  }
+
+  /**
+   * SAX view on the attributes of the current start tag of a pull parser.
+   */
+  private static final class PullAttributes implements org.xml.sax.Attributes {
+
+    private static final String CDATA = "CDATA";
+
+    private final XmlPullParser pullparser;
+
+    PullAttributes(XmlPullParser pullparser) {
+      this.pullparser = pullparser;
+    }
+
+    @Override
+    public int getLength() {
+      return pullparser.getAttributeCount();
+    }
+
+    @Override
+    public String getURI(int index) {
+      return pullparser.getAttributeNamespace(index);
+    }
+
+    @Override
+    public String getLocalName(int index) {
+      return pullparser.getAttributeName(index);
+    }
+
+    @Override
+    public String getQName(int index) {
+      return pullparser.getAttributeName(index);
+    }
+
+    @Override
+    public String getType(int index) {
+      return CDATA;
+    }
+
+    @Override
+    public String getValue(int index) {
+      return pullparser.getAttributeValue(index);
+    }
+
+    @Override
+    public int getIndex(String uri, String localName) {
+      return getIndex(localName);
+    }
+
+    @Override
+    public int getIndex(String qName) {
+      final int length = pullparser.getAttributeCount();
+      for (int i = 0; i < length; i++) {
+        if (qName.equals(pullparser.getAttributeName(i))) {
+          return i;
+        }
+      }
+
+      return -1;
+    }
+
+    @Override
+    public String getType(String uri, String localName) {
+      return getIndex(localName) < 0 ? null : CDATA;
+    }
+
+    @Override
+    public String getType(String qName) {
+      return getIndex(qName) < 0 ? null : CDATA;
+    }
+
+    @Override
+    public String getValue(String uri, String localName) {
+      return getValue(localName);
+    }
+
+    @Override
+    public String getValue(String qName) {
+      final int index = getIndex(qName);
+      return index < 0 ? null : pullparser.getAttributeValue(index);
+    }
+
+  }
+
+}
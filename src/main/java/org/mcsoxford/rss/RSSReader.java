@@ -18,6 +18,10 @@ package org.mcsoxford.rss;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -26,7 +30,17 @@ import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
 
 /**
  * HTTP client to retrieve and parse RSS 2.0 feeds. Callers must call
@@ -46,6 +60,31 @@ public class RSSReader implements java.io.Closeable {
    */
   private final RSSParserSPI parser;
 
+  /**
+   * HTTP cache validators of the most recently retrieved version of each RSS
+   * feed URI which is revalidated, e.g. by {@link #loadIfModified(String)}.
+   */
+  private final ConcurrentMap<String, Validators> validators;
+
+  /**
+   * RSS items which {@link #loadNew(String)} has returned for each RSS feed
+   * URI.
+   */
+  private final ConcurrentMap<String, SeenItems> seen;
+
+  private final RSSConfig config;
+
+  /**
+   * Milliseconds after which idle pooled connections are closed, or zero if
+   * the connections of {@link #httpclient} are managed elsewhere.
+   */
+  private final long idleTimeout;
+
+  /**
+   * Time in milliseconds when idle connections were last closed.
+   */
+  private volatile long lastEviction = System.currentTimeMillis();
+
   /**
    * Instantiate a thread-safe HTTP client to retrieve RSS feeds. The injected
    * {@link HttpClient} implementation must be thread-safe.
@@ -54,8 +93,31 @@ public class RSSReader implements java.io.Closeable {
    * @param parser thread-safe RSS parser SPI implementation
    */
   public RSSReader(HttpClient httpclient, RSSParserSPI parser) {
+    this(httpclient, parser, new RSSConfig(), 0L);
+  }
+
+  private RSSReader(HttpClient httpclient, RSSParserSPI parser,
+      RSSConfig config, long idleTimeout) {
     this.httpclient = httpclient;
     this.parser = parser;
+    this.config = config;
+    this.idleTimeout = idleTimeout;
+    this.validators = new ConcurrentHashMap<String, Validators>();
+    this.seen = new ConcurrentHashMap<String, SeenItems>();
+  }
+
+  /**
+   * Instantiate a reader which shares the HTTP client, parser and cache
+   * validators of the given reader. Subclasses which decorate another reader
+   * use this constructor.
+   */
+  RSSReader(RSSReader other) {
+    this.httpclient = other.httpclient;
+    this.parser = other.parser;
+    this.config = other.config;
+    this.idleTimeout = other.idleTimeout;
+    this.validators = other.validators;
+    this.seen = other.seen;
   }
 
   /**
@@ -67,16 +129,18 @@ public class RSSReader implements java.io.Closeable {
    * @param config RSS configuration
    */
   public RSSReader(HttpClient httpclient, RSSConfig config) {
-    this(httpclient, new RSSParser(config));
+    this(httpclient, new RSSParser(config), config, 0L);
   }
 
   /**
    * Instantiate a thread-safe HTTP client to retrieve and parse RSS feeds.
    * Internal memory consumption and load performance can be tweaked with
-   * {@link RSSConfig}.
+   * {@link RSSConfig}, which also determines the size of the pool of
+   * persistent HTTP connections shared by all threads using this reader.
    */
   public RSSReader(RSSConfig config) {
-    this(new DefaultHttpClient(), new RSSParser(config));
+    this(pooledHttpClient(config), new RSSParser(config), config,
+        config.idleTimeoutMillis);
   }
 
   /**
@@ -84,7 +148,47 @@ public class RSSReader implements java.io.Closeable {
    * Default RSS configuration capacity values are used.
    */
   public RSSReader() {
-    this(new DefaultHttpClient(), new RSSParser(new RSSConfig()));
+    this(new RSSConfig());
+  }
+
+  /**
+   * Creates an HTTP client which can be used by many threads at the same time
+   * and which keeps connections alive for reuse within the limits of the
+   * given configuration.
+   */
+  @SuppressWarnings("deprecation")
+  static DefaultHttpClient pooledHttpClient(RSSConfig config) {
+    // Use the connection manager API which is also available on Android. Its
+    // types are deprecated, so they are qualified here rather than imported.
+    final HttpParams params = new BasicHttpParams();
+    org.apache.http.conn.params.ConnManagerParams.setMaxTotalConnections(params,
+        config.maxConnections);
+    org.apache.http.conn.params.ConnManagerParams.setMaxConnectionsPerRoute(params,
+        new org.apache.http.conn.params.ConnPerRouteBean(config.maxConnectionsPerHost));
+    org.apache.http.conn.params.ConnManagerParams.setTimeout(params,
+        config.connectionRequestTimeoutMillis);
+    HttpConnectionParams.setConnectionTimeout(params, config.connectTimeoutMillis);
+    HttpConnectionParams.setSoTimeout(params, config.socketTimeoutMillis);
+    HttpConnectionParams.setStaleCheckingEnabled(params, true);
+
+    final SchemeRegistry registry = new SchemeRegistry();
+    registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+    registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+    final ClientConnectionManager manager =
+        new org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager(params, registry);
+    final DefaultHttpClient httpclient = new DefaultHttpClient(manager, params);
+
+    // Honour a shorter keep-alive duration requested by the server
+    final long keepAlive = config.keepAliveMillis;
+    httpclient.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+      @Override
+      public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        final long duration = super.getKeepAliveDuration(response, context);
+        return duration < 0 ? keepAlive : Math.min(duration, keepAlive);
+      }
+    });
+    return httpclient;
   }
 
   /**
@@ -95,43 +199,236 @@ public class RSSReader implements java.io.Closeable {
    * @return in-memory representation of downloaded RSS feed
    * @throws RSSReaderException if RSS feed could not be retrieved because of
    *           HTTP error
-   * @throws RSSFault if an unrecoverable IO error has occurred
+   * @throws RSSFault if an unrecoverable IO error has occurred, in particular
+   *           an {@link RSSTimeoutException} if a deadline has been missed
    */
   public RSSFeed load(String uri) throws RSSReaderException {
+    return load(uri, /* conditional */false, /* revalidate */false, /* unseen */null,
+        /* abort */null);
+  }
+
+  /**
+   * Send conditional HTTP GET request and parse the XML response unless the RSS
+   * feed has not changed since it was last retrieved by this reader. The
+   * request carries If-None-Match and If-Modified-Since headers based on the
+   * ETag and Last-Modified headers of the previous response for the same URI.
+   * 
+   * @param uri RSS 2.0 feed URI
+   * @return in-memory representation of downloaded RSS feed
+   * @throws RSSNotModifiedException if the server reports that the RSS feed
+   *           has not been modified; nothing is parsed in this case
+   * @throws RSSReaderException if RSS feed could not be retrieved because of
+   *           HTTP error
+   * @throws RSSFault if an unrecoverable IO error has occurred
+   */
+  public RSSFeed loadIfModified(String uri) throws RSSReaderException {
+    return load(uri, /* conditional */true, /* revalidate */true, /* unseen */null,
+        /* abort */null);
+  }
+
+  /**
+   * Send conditional HTTP GET request and return the RSS feed with only those
+   * RSS items which this method has not returned before for the same URI.
+   * RSS items are identified by their &lt;guid&gt; element, or else by their
+   * &lt;link&gt; element; RSS items with neither are always new. On the first
+   * call for a URI, all RSS items are new.
+   * <p>
+   * Parsing stops early after a run of already seen RSS items, and only a
+   * bounded number of RSS items is remembered per URI, as configured with
+   * {@link RSSConfig#withSeenItems(int, int)}. Concurrent calls for the same
+   * URI may return the same new RSS items.
+   *
+   * @param uri RSS 2.0 feed URI
+   * @return in-memory representation of downloaded RSS feed with new RSS
+   *         items only
+   * @throws RSSNotModifiedException if the server reports that the RSS feed
+   *           has not been modified, so there are no new RSS items
+   * @throws RSSReaderException if RSS feed could not be retrieved because of
+   *           HTTP error
+   * @throws RSSFault if an unrecoverable IO error has occurred
+   */
+  public RSSFeed loadNew(String uri) throws RSSReaderException {
+    SeenItems items = seen.get(uri);
+    if (items == null) {
+      final SeenItems created = new SeenItems(config.seenCapacity);
+      items = seen.putIfAbsent(uri, created);
+      if (items == null) {
+        items = created;
+      }
+    }
+
+    final RSSFeed feed = load(uri, /* conditional */true, /* revalidate */true, items,
+        /* abort */null);
+    // only mark RSS items as seen once they have been delivered
+    items.addAll(feed.getItems());
+    return feed;
+  }
+
+  /**
+   * Retrieves and parses the RSS feed like {@link #load(String)} or, if
+   * {@code conditional}, like {@link #loadIfModified(String)}. If
+   * {@code revalidate}, the HTTP cache validators of the response are kept
+   * for later conditional loads even if this load is unconditional. The load
+   * can be aborted from another thread through the specified handle, in
+   * which case an {@link RSSFault} is thrown.
+   */
+  RSSFeed load(String uri, boolean conditional, boolean revalidate, Abort abort)
+      throws RSSReaderException {
+    return load(uri, conditional, revalidate, /* unseen */null, abort);
+  }
+
+  /**
+   * Retrieves and parses the RSS feed. Unless {@code unseen} is {@code null},
+   * only RSS items which it does not contain are kept, and its own HTTP cache
+   * validators are used instead of those shared by the other loads. Unless {@code abort}
+   * is {@code null}, the HTTP request is attached to it.
+   */
+  private RSSFeed load(String uri, boolean conditional, boolean revalidate,
+      SeenItems unseen, Abort abort) throws RSSReaderException {
+    evictIdleConnections();
+
     final HttpGet httpget = new HttpGet(uri);
+    if (config.connectDeadlineMillis > 0) {
+      HttpConnectionParams.setConnectionTimeout(httpget.getParams(),
+          config.connectDeadlineMillis);
+    }
+    if (abort != null) {
+      abort.attach(httpget);
+    }
+    ContentEncodings.accept(httpget);
+    if (conditional) {
+      final Validators previous = unseen == null ? validators.get(uri)
+          : unseen.validators;
+      if (previous != null) {
+        previous.addTo(httpget);
+      }
+    }
 
     InputStream feedStream = null;
+    final Deadline deadline = new Deadline(httpget, config.firstByteTimeoutMillis,
+        config.totalTimeoutMillis);
     try {
       // Send GET request to URI
       final HttpResponse response = httpclient.execute(httpget);
+      deadline.responded();
 
       // Check if server response is valid
       final StatusLine status = response.getStatusLine();
-      if (status.getStatusCode() != HttpStatus.SC_OK) {
+      if (status.getStatusCode() == HttpStatus.SC_NOT_MODIFIED && conditional) {
+        discard(response);
+        throw new RSSNotModifiedException(status.getReasonPhrase());
+      } else if (status.getStatusCode() != HttpStatus.SC_OK) {
+        discard(response);
         throw new RSSReaderException(status.getStatusCode(),
             status.getReasonPhrase());
       }
 
-      // Extract content stream from HTTP response
+      // Extract content stream from HTTP response and decompress it
       HttpEntity entity = response.getEntity();
-      feedStream = entity.getContent();
+      feedStream = ContentEncodings.decode(entity);
 
-      RSSFeed feed = parser.parse(feedStream);
+      final RSSFeed feed = unseen == null ? parser.parse(feedStream)
+          : unseen.parse(parser, feedStream, config.stopAfterSeen);
+
+      if (feed.isTruncated()) {
+        // Drop the connection rather than downloading the remainder of the
+        // feed when the stream is closed.
+        httpget.abort();
+      }
 
       if (feed.getLink() == null) {
         feed.setLink(android.net.Uri.parse(uri));
       }
 
+      // Remember how to make the next request for this URI conditional, but
+      // only for URIs which are revalidated so that the map stays bounded
+      if (unseen != null) {
+        unseen.validators = Validators.of(response);
+      } else if (revalidate) {
+        setValidators(uri, Validators.of(response));
+      }
+
       return feed;
     } catch (ClientProtocolException e) {
       throw new RSSFault(e);
     } catch (IOException e) {
-      throw new RSSFault(e);
+      throw fault(deadline, e);
+    } catch (RSSFault e) {
+      // the parser wraps I/O errors of the aborted stream
+      throw e.getCause() instanceof IOException ? fault(deadline, e.getCause()) : e;
     } finally {
+      deadline.finished();
       Resources.closeQuietly(feedStream);
     }
   }
 
+  /**
+   * Returns an {@link RSSTimeoutException} if the I/O error has been caused
+   * by a missed deadline or timeout, or an {@link RSSFault} otherwise.
+   */
+  private static RSSFault fault(Deadline deadline, Throwable cause) {
+    if (cause instanceof RSSTimeoutException) {
+      return (RSSTimeoutException) cause;
+    } else if (deadline.expired() != null) {
+      return new RSSTimeoutException(deadline.expired(), cause);
+    } else if (cause instanceof InterruptedIOException) {
+      // connect, socket and connection pool timeouts
+      return new RSSTimeoutException(String.valueOf(cause.getMessage()), cause);
+    }
+    return new RSSFault(cause);
+  }
+
+  /**
+   * Returns the HTTP cache validators of the most recently retrieved version
+   * of the RSS feed, or {@code null} if there are none.
+   */
+  Validators getValidators(String uri) {
+    return validators.get(uri);
+  }
+
+  /**
+   * Sets the HTTP cache validators used by {@link #loadIfModified(String)}.
+   * A {@code null} value removes them.
+   */
+  void setValidators(String uri, Validators current) {
+    if (current == null) {
+      validators.remove(uri);
+    } else {
+      validators.put(uri, current);
+    }
+  }
+
+  /**
+   * Closes expired and idle pooled connections at most once per idle timeout
+   * period. Nothing is done if connections are managed elsewhere.
+   */
+  private void evictIdleConnections() {
+    if (idleTimeout == 0) {
+      return;
+    }
+
+    final long now = System.currentTimeMillis();
+    if (now - lastEviction < idleTimeout) {
+      return;
+    }
+
+    lastEviction = now;
+    final ClientConnectionManager manager = httpclient.getConnectionManager();
+    manager.closeExpiredConnections();
+    manager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Reads and discards the response body, if any, so that the connection can
+   * be reused.
+   */
+  private static void discard(HttpResponse response) throws IOException {
+    final HttpEntity entity = response.getEntity();
+    if (entity != null) {
+      Resources.closeQuietly(entity.getContent());
+    }
+  }
+
   /**
    * Release all HTTP client resources.
    */
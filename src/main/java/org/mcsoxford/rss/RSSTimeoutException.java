@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Thrown when loading an RSS feed takes longer than one of its deadlines,
+ * namely for connecting, for receiving the first byte of the response, for
+ * waiting for more data, or for the load as a whole. The HTTP request has
+ * been aborted by the time this exception is thrown.
+ * 
+ * @author Mr Horn
+ * @see RSSConfig#withDeadlines(int, long, long)
+ */
+public class RSSTimeoutException extends RSSFault {
+
+  /**
+   * Unsupported serialization
+   */
+  private static final long serialVersionUID = 1L;
+
+  public RSSTimeoutException(String message) {
+    super(message);
+  }
+
+  public RSSTimeoutException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Internal helper class to compute when a subscribed RSS feed is refreshed
+ * next.
+ *
+ * @author Mr Horn
+ */
+final class RefreshTimes {
+
+  /* Hide constructor */
+  private RefreshTimes() {}
+
+  private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+
+  private static final int ALL_HOURS = (1 << 24) - 1;
+
+  private static final int ALL_DAYS = ((1 << 7) - 1) << Calendar.SUNDAY;
+
+  /**
+   * Returns the time in milliseconds at which the RSS feed should be
+   * refreshed next. The RSS feed is refreshed about as often as it publishes
+   * new RSS items, but not before its &lt;ttl&gt; has expired. Until its
+   * publish rate is known, it is refreshed after its &lt;ttl&gt;, or after the
+   * fallback interval if it has no &lt;ttl&gt; or has never been loaded. The
+   * interval doubles with each refresh which found no new RSS items, and is
+   * kept within the minimum and maximum intervals. Hours and days which the
+   * RSS feed asks to skip are passed over.
+   *
+   * @param feed most recently loaded RSS feed, or {@code null} if none
+   * @param rate publish rate of the RSS feed, or {@code null} if unknown
+   */
+  static long next(RSSFeed feed, PublishRate rate, long now, RSSConfig config) {
+    final Integer ttl = feed == null ? null : feed.getTTL();
+    final long expires = ttl == null ? 0L : TimeUnit.MINUTES.toMillis(ttl);
+
+    long interval = rate == null ? 0L : rate.average();
+    if (interval == 0L) {
+      interval = ttl == null ? config.defaultRefreshMillis : expires;
+    } else {
+      interval = Math.max(interval, expires);
+    }
+
+    final int idle = rate == null ? 0 : rate.idle();
+    for (int i = 0; i < idle && interval < config.maxRefreshMillis; i++) {
+      interval *= 2;
+    }
+
+    interval = Math.min(Math.max(config.minRefreshMillis, interval),
+        config.maxRefreshMillis);
+    return skip(feed, now + interval);
+  }
+
+  /**
+   * Returns the earliest time at or after the specified time which does not
+   * fall into an hour or day which the RSS feed asks to skip. Skip hours and
+   * days are ignored if they would rule out every time.
+   */
+  static long skip(RSSFeed feed, long time) {
+    if (feed == null) {
+      return time;
+    }
+
+    final int hours = feed.getSkipHourBits();
+    final int days = feed.getSkipDayBits();
+    if ((hours == 0 && days == 0) || (hours & ALL_HOURS) == ALL_HOURS
+        || (days & ALL_DAYS) == ALL_DAYS) {
+      return time;
+    }
+
+    final Calendar calendar = Calendar.getInstance(GMT);
+    calendar.setTimeInMillis(time);
+    // at most one week of hours needs to be passed over
+    for (int i = 0; i < 24 * 7; i++) {
+      if ((days & (1 << calendar.get(Calendar.DAY_OF_WEEK))) != 0) {
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+      } else if ((hours & (1 << calendar.get(Calendar.HOUR_OF_DAY))) != 0) {
+        calendar.add(Calendar.HOUR_OF_DAY, 1);
+      } else {
+        return calendar.getTimeInMillis();
+      }
+
+      calendar.set(Calendar.MINUTE, 0);
+      calendar.set(Calendar.SECOND, 0);
+      calendar.set(Calendar.MILLISECOND, 0);
+    }
+    return time;
+  }
+
+}
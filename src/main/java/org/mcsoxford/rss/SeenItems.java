@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Internal bounded set of the RSS items of one RSS feed which have already
+ * been returned. Each RSS item is identified by the 64-bit hash of its
+ * &lt;guid&gt;, or else of its &lt;link&gt;. Once the set is full, the
+ * identity which has been added first is forgotten.
+ * <p>
+ * Identities live in an open-addressing hash table of primitive longs, and
+ * a ring buffer records their insertion order. This class is thread-safe.
+ *
+ * @author Mr Horn
+ */
+final class SeenItems {
+
+  /**
+   * Identities in insertion order, starting at {@link #head} once full.
+   */
+  private final long[] order;
+
+  /**
+   * Linear-probing hash table of identities in which zero marks free slots.
+   */
+  private final long[] table;
+  private final int mask;
+
+  private int head;
+  private int size;
+
+  /**
+   * HTTP cache validators of the version from which the RSS items were last
+   * returned, or {@code null} if none. They are kept apart from those of
+   * other loads so that a version which only other loads have retrieved is
+   * never reported as not modified.
+   */
+  volatile Validators validators;
+
+  SeenItems(int capacity) {
+    order = new long[capacity];
+    int slots = 2;
+    while (slots < capacity * 2) {
+      slots <<= 1;
+    }
+    table = new long[slots];
+    mask = slots - 1;
+  }
+
+  /**
+   * Returns the identity of the RSS item, or zero if it has neither a
+   * &lt;guid&gt; nor a &lt;link&gt; element.
+   */
+  static long identity(RSSItem item) {
+    if (item.getGuid() != null) {
+      return Hashes.hash64(item.getGuid());
+    } else if (item.getLinkString() != null) {
+      return Hashes.hash64(item.getLinkString());
+    }
+    return 0L;
+  }
+
+  /**
+   * Returns {@code true} if the RSS item has been seen. RSS items without
+   * identity are never seen.
+   */
+  synchronized boolean contains(RSSItem item) {
+    final long identity = identity(item);
+    return identity != 0L && slot(identity) >= 0;
+  }
+
+  /**
+   * Marks the RSS items as seen, forgetting the oldest identities if the set
+   * is full.
+   */
+  synchronized void addAll(List<RSSItem> items) {
+    for (RSSItem item : items) {
+      final long identity = identity(item);
+      if (identity == 0L || slot(identity) >= 0) {
+        continue;
+      }
+
+      if (size == order.length) {
+        remove(order[head]);
+      } else {
+        size++;
+      }
+      order[head] = identity;
+      head = (head + 1) % order.length;
+
+      int i = home(identity);
+      while (table[i] != 0L) {
+        i = (i + 1) & mask;
+      }
+      table[i] = identity;
+    }
+  }
+
+  /**
+   * Parses the RSS feed and returns it with only the RSS items which have not
+   * been seen. If {@code stopAfter} is positive, parsing stops once that many
+   * consecutive RSS items have been seen. The RSS items are not marked as
+   * seen yet.
+   */
+  RSSFeed parse(RSSParserSPI parser, InputStream stream, final int stopAfter) {
+    if (!(parser instanceof RSSStreamParserSPI)) {
+      final RSSFeed feed = parser.parse(stream);
+      final List<RSSItem> items = new ArrayList<RSSItem>(feed.getItems());
+      feed.clearItems();
+      for (RSSItem item : items) {
+        if (!contains(item)) {
+          feed.addItem(item);
+        }
+      }
+      return feed;
+    }
+
+    final RSSFeed[] channel = new RSSFeed[1];
+    final List<RSSItem> unseen = new ArrayList<RSSItem>();
+    ((RSSStreamParserSPI) parser).parse(stream, new RSSListener() {
+
+      private int run;
+
+      @Override
+      public void onChannel(RSSFeed feed) {
+        channel[0] = feed;
+      }
+
+      @Override
+      public boolean onItem(RSSItem item) {
+        if (!contains(item)) {
+          run = 0;
+          unseen.add(item);
+          return true;
+        }
+
+        return stopAfter <= 0 || ++run < stopAfter;
+      }
+
+    });
+
+    final RSSFeed feed = channel[0] == null ? new RSSFeed() : channel[0];
+    for (RSSItem item : unseen) {
+      feed.addItem(item);
+    }
+    return feed;
+  }
+
+  private int home(long identity) {
+    return (int) (identity ^ (identity >>> 32)) & mask;
+  }
+
+  /**
+   * Returns the table slot of the identity, or -1 if it is absent.
+   */
+  private int slot(long identity) {
+    for (int i = home(identity); table[i] != 0L; i = (i + 1) & mask) {
+      if (table[i] == identity) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Removes the identity and shifts back subsequent entries of its probe
+   * sequence so that no tombstones are needed.
+   */
+  private void remove(long identity) {
+    int free = slot(identity);
+    if (free < 0) {
+      return;
+    }
+
+    for (int i = (free + 1) & mask; table[i] != 0L; i = (i + 1) & mask) {
+      final int home = home(table[i]);
+      // move the entry unless its home lies cyclically in (free, i]
+      final boolean stays = free <= i ? free < home && home <= i
+          : free < home || home <= i;
+      if (!stays) {
+        table[free] = table[i];
+        free = i;
+      }
+    }
+    table[free] = 0L;
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2010 A. Horn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+
+/**
+ * Immutable HTTP cache validators of an RSS feed which enable conditional GET
+ * requests.
+ * 
+ * @author Mr Horn
+ */
+final class Validators {
+
+  private static final String ETAG = "ETag";
+  private static final String LAST_MODIFIED = "Last-Modified";
+  private static final String IF_NONE_MATCH = "If-None-Match";
+  private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+  /**
+   * Value of the ETag header, or {@code null} if unspecified.
+   */
+  final String etag;
+
+  /**
+   * Value of the Last-Modified header, or {@code null} if unspecified.
+   */
+  final String lastModified;
+
+  Validators(String etag, String lastModified) {
+    this.etag = etag;
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Returns the validators of the HTTP response, or {@code null} if it has
+   * neither an ETag nor a Last-Modified header.
+   */
+  static Validators of(HttpResponse response) {
+    final String etag = value(response.getFirstHeader(ETAG));
+    final String lastModified = value(response.getFirstHeader(LAST_MODIFIED));
+    if (etag == null && lastModified == null) {
+      return null;
+    }
+
+    return new Validators(etag, lastModified);
+  }
+
+  /**
+   * Makes the HTTP request conditional on a change of the RSS feed. The
+   * Last-Modified value is sent back verbatim as recommended by RFC 2616.
+   */
+  void addTo(HttpRequest request) {
+    if (etag != null) {
+      request.setHeader(IF_NONE_MATCH, etag);
+    }
+    if (lastModified != null) {
+      request.setHeader(IF_MODIFIED_SINCE, lastModified);
+    }
+  }
+
+  private static String value(Header header) {
+    return header == null ? null : header.getValue();
+  }
+
+}
@@ -5,6 +5,13 @@ package android.net;
  */
 public final class Uri {
 
+  /**
+   * Number of calls to {@link #parse(String)}, so that tests can tell when
+   * URIs are converted.
+   */
+  public static final java.util.concurrent.atomic.AtomicInteger PARSES =
+      new java.util.concurrent.atomic.AtomicInteger();
+
   private final String uri;
 
   private Uri(String uri) {
@@ -12,6 +19,7 @@ public final class Uri {
   }
 
   public static Uri parse(String uri) {
+    PARSES.incrementAndGet();
     return new Uri(uri);
   }
 
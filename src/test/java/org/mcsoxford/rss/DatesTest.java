@@ -0,0 +1,96 @@
+package org.mcsoxford.rss;
+
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for RFC 822 date/time parser.
+ * 
+ * @author Mr Horn
+ */
+public class DatesTest {
+
+  /**
+   * Sun, 07 Nov 2010 08:22:14 GMT
+   */
+  private static final Date EXPECTED = date(2010, 10, 7, 8, 22, 14);
+
+  private static Date date(int year, int month, int day, int hour, int minute, int second) {
+    final GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+    calendar.clear();
+    calendar.set(year, month, day, hour, minute, second);
+    return calendar.getTime();
+  }
+
+  @Test
+  public void rfc822() {
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 GMT"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 +0000"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 09:22:14 +0100"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 03:22:14 EST"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 00:22:14 PST"));
+  }
+
+  @Test
+  public void namedZones() {
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 10:22:14 CEST"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 09:22:14 cet"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 18:22:14 AEST"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 04:52:14 NST"));
+    assertNull(Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 IST", true));
+    assertNull(Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 BST", true));
+    assertNull(Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 AST", true));
+  }
+
+  @Test
+  public void rfc822Variants() {
+    assertEquals(EXPECTED, Dates.parseRfc822("07 Nov 2010 08:22:14 GMT"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 7 Nov 10 08:22:14 GMT"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sunday, 07 November 2010 08:22:14 Z"));
+    assertEquals(EXPECTED, Dates.parseRfc822("\n  Sun, 07 Nov 2010 08:22:14 UT  \n"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 GMT+00:00"));
+    assertEquals(EXPECTED, Dates.parseRfc822("Sun, 07 Nov 2010 05:52:14 -02:30"));
+    assertEquals(date(2010, 10, 7, 8, 22, 0), Dates.parseRfc822("Sun, 07 Nov 2010 08:22 GMT"));
+    assertEquals(date(1999, 0, 1, 0, 0, 0), Dates.parseRfc822("Fri, 01 Jan 99 00:00:00 GMT"));
+  }
+
+  @Test
+  public void iso8601() {
+    assertEquals(EXPECTED, Dates.parseRfc822("2010-11-07T08:22:14Z"));
+    assertEquals(EXPECTED, Dates.parseRfc822("2010-11-07T09:22:14+01:00"));
+    assertEquals(new Date(EXPECTED.getTime() + 250), Dates.parseRfc822("2010-11-07T08:22:14.25Z"));
+    assertEquals(date(2010, 10, 7, 0, 0, 0), Dates.parseRfc822("2010-11-07"));
+  }
+
+  @Test
+  public void memo() {
+    final Date first = Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 GMT");
+    final Date second = Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 GMT");
+    assertEquals(first, second);
+    assertNotSame(first, second);
+  }
+
+  @Test(expected = RSSFault.class)
+  public void invalid() {
+    Dates.parseRfc822("yesterday");
+  }
+
+  @Test(expected = RSSFault.class)
+  public void invalidZone() {
+    Dates.parseRfc822("Sun, 07 Nov 2010 08:22:14 Nowhere");
+  }
+
+  @Test
+  public void lenient() {
+    assertNull(Dates.parseRfc822("yesterday", true));
+    assertNull(Dates.parseRfc822("Sun, 07 Foo 2010 08:22:14 GMT", true));
+    assertEquals(Dates.INVALID, Dates.parseRfc822Millis(null));
+  }
+
+}
@@ -0,0 +1,100 @@
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the binary serialization of RSS feeds.
+ *
+ * @author Mr Horn
+ */
+public class FeedCodecTest {
+
+  private static final String ENCLOSURES = "<rss><channel>"
+      + "<title>Podcast</title><ttl>90</ttl>"
+      + "<item><title>Episode 1</title><link>http://example.com/1</link>"
+      + "<pubDate>Sun, 07 Nov 2010 08:22:14 GMT</pubDate>"
+      + "<category>Audio</category>"
+      + "<enclosure url=\"http://cdn.example.com/1.mp3\" length=\"1234\" type=\"audio/mpeg\"/></item>"
+      + "<item><title>Episode 2</title><link>http://example.com/2</link><guid>urn:2</guid>"
+      + "<pubDate>Sat, 06 Nov 2010 08:22:14 GMT</pubDate>"
+      + "<category>Audio</category>"
+      + "<enclosure url=\"http://cdn.example.com/2.mp3\" length=\"5678\" type=\"audio/mpeg\"/></item>"
+      + "<item><description>No title, link or date</description></item>"
+      + "</channel></rss>";
+
+  @Test
+  public void roundTrip() throws IOException {
+    final byte[] xml = FeedServer.fixture();
+    final RSSFeed feed = parse(xml);
+    final byte[] bytes = FeedCodec.encode(feed);
+
+    RSSDiskCacheTest.assertFeedEquals(feed, FeedCodec.decode(bytes, 0, bytes.length));
+    assertTrue(bytes.length < xml.length / 2);
+  }
+
+  @Test
+  public void roundTripEnclosures() throws IOException {
+    final RSSFeed feed = parse(ENCLOSURES.getBytes("UTF-8"));
+    final byte[] bytes = FeedCodec.encode(feed);
+    final RSSFeed decoded = FeedCodec.decode(bytes, 0, bytes.length);
+
+    RSSDiskCacheTest.assertFeedEquals(feed, decoded);
+    assertEquals(Integer.valueOf(90), decoded.getTTL());
+    assertNull(decoded.getItems().get(2).getTitle());
+    assertNull(decoded.getItems().get(2).getPubDate());
+    assertNull(decoded.getItems().get(0).getGuid());
+    assertEquals("urn:2", decoded.getItems().get(1).getGuid());
+
+    final MediaEnclosure enclosure = decoded.getItems().get(1).getEnclosure();
+    assertEquals(android.net.Uri.parse("http://cdn.example.com/2.mp3"), enclosure.getUrl());
+    assertEquals(5678, enclosure.getLength());
+    assertEquals("audio/mpeg", enclosure.getMimeType());
+  }
+
+  @Test
+  public void roundTripSkips() throws IOException {
+    final RSSFeed feed = parse(("<rss><channel><title>Example</title>"
+        + "<skipHours><hour>0</hour><hour>23</hour></skipHours>"
+        + "<skipDays><day>Saturday</day></skipDays>"
+        + "</channel></rss>").getBytes("UTF-8"));
+    final byte[] bytes = FeedCodec.encode(feed);
+    final RSSFeed decoded = FeedCodec.decode(bytes, 0, bytes.length);
+
+    assertEquals(feed.getSkipHours(), decoded.getSkipHours());
+    assertEquals(feed.getSkipDays(), decoded.getSkipDays());
+    assertEquals(2, decoded.getSkipHours().size());
+    assertTrue(decoded.getSkipDays().contains(7));
+  }
+
+  @Test
+  public void offset() throws IOException {
+    final byte[] bytes = FeedCodec.encode(parse(FeedServer.fixture()));
+    final byte[] padded = new byte[bytes.length + 10];
+    System.arraycopy(bytes, 0, padded, 5, bytes.length);
+
+    assertEquals(2, FeedCodec.decode(padded, 5, bytes.length).getItems().size());
+  }
+
+  @Test(expected = IOException.class)
+  public void unsupportedVersion() throws IOException {
+    final byte[] bytes = FeedCodec.encode(parse(FeedServer.fixture()));
+    bytes[0] = 1;
+    FeedCodec.decode(bytes, 0, bytes.length);
+  }
+
+  @Test(expected = IOException.class)
+  public void truncated() throws IOException {
+    final byte[] bytes = FeedCodec.encode(parse(FeedServer.fixture()));
+    FeedCodec.decode(bytes, 0, bytes.length - 1);
+  }
+
+  private static RSSFeed parse(byte[] xml) {
+    return new RSSParser(new RSSConfig()).parse(new ByteArrayInputStream(xml));
+  }
+
+}
@@ -0,0 +1,114 @@
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP stub which serves RSS feeds to tests.
+ * 
+ * @author Mr Horn
+ */
+final class FeedServer {
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Number of requests which have been received.
+   */
+  final AtomicInteger requests = new AtomicInteger();
+
+  FeedServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * Handle requests for the specified path.
+   */
+  void serve(String path, final HttpHandler handler) {
+    server.createContext(path, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+          handler.handle(exchange);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+  }
+
+  /**
+   * Serve the "rssfeed.xml" fixture at the specified path.
+   */
+  void serveFixture(String path) throws IOException {
+    final byte[] body = fixture();
+    serve(path, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        send(exchange, 200, body);
+      }
+    });
+  }
+
+  /**
+   * Returns the absolute URI of the specified path.
+   */
+  String uri(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * Sends the response status and body.
+   */
+  static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/rss+xml");
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+
+    exchange.sendResponseHeaders(status, body.length);
+    final OutputStream out = exchange.getResponseBody();
+    out.write(body);
+    out.close();
+  }
+
+  /**
+   * Returns the bytes of the "rssfeed.xml" fixture.
+   */
+  static byte[] fixture() throws IOException {
+    final InputStream in = FeedServer.class.getClassLoader().getResourceAsStream("rssfeed.xml");
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, n);
+      }
+      return bytes.toByteArray();
+    } finally {
+      Resources.closeQuietly(in);
+    }
+  }
+
+}
@@ -0,0 +1,116 @@
+package org.mcsoxford.rss;
+
+import org.junit.Test;
+
+import org.mcsoxford.rss.RSSLoader.RSSFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the per-host limits of the asynchronous RSS feed loader.
+ *
+ * @author Mr Horn
+ */
+public class HostThrottleTest {
+
+  private static final long NOW = 1289118134000L;
+
+  @Test
+  public void host() {
+    assertEquals("example.com", HostThrottle.host("http://Example.COM:8080/rss"));
+    assertEquals("not a uri", HostThrottle.host("not a uri"));
+  }
+
+  @Test
+  public void limited() {
+    assertFalse(HostThrottle.isLimited(new RSSConfig()));
+    assertTrue(HostThrottle.isLimited(new RSSConfig().withHostLimits(2, 0, 1)));
+    assertTrue(HostThrottle.isLimited(new RSSConfig().withHostLimits(0, 0.5, 1)));
+  }
+
+  @Test
+  public void concurrency() {
+    final HostThrottle throttle = new HostThrottle(new RSSConfig().withHostLimits(1, 0, 1));
+    final RSSFuture a1 = future("http://a.example.com/1");
+    final RSSFuture a2 = future("http://a.example.com/2");
+    final RSSFuture b1 = future("http://b.example.com/1");
+
+    assertTrue(throttle.acquire(a1, NOW));
+    assertFalse(throttle.acquire(a2, NOW));
+    assertTrue(throttle.acquire(b1, NOW));
+    assertNull(throttle.poll(NOW));
+    assertEquals(Long.MAX_VALUE, throttle.delay(NOW));
+
+    assertTrue(throttle.release(a1));
+    assertSame(a2, throttle.poll(NOW));
+    assertFalse(throttle.release(a2));
+    assertFalse(throttle.release(b1));
+  }
+
+  @Test
+  public void rate() {
+    final HostThrottle throttle = new HostThrottle(new RSSConfig().withHostLimits(0, 10, 2));
+    final RSSFuture a1 = future("http://a.example.com/1");
+    final RSSFuture a2 = future("http://a.example.com/2");
+    final RSSFuture a3 = future("http://a.example.com/3");
+
+    // the burst is sent at once, then one request every 100 milliseconds
+    assertTrue(throttle.acquire(a1, NOW));
+    assertTrue(throttle.acquire(a2, NOW));
+    assertFalse(throttle.acquire(a3, NOW));
+    assertEquals(100, throttle.delay(NOW));
+    assertNull(throttle.poll(NOW + 99));
+    assertSame(a3, throttle.poll(NOW + 100));
+  }
+
+  @Test
+  public void rotation() {
+    final HostThrottle throttle = new HostThrottle(new RSSConfig().withHostLimits(0, 10, 1));
+    final RSSFuture[] a = new RSSFuture[3];
+    final RSSFuture[] b = new RSSFuture[3];
+    for (int i = 0; i < 3; i++) {
+      a[i] = future("http://a.example.com/" + i);
+      b[i] = future("http://b.example.com/" + i);
+    }
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i == 0, throttle.acquire(a[i], NOW));
+    }
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i == 0, throttle.acquire(b[i], NOW));
+    }
+
+    // hosts take turns as they regain tokens
+    assertSame(a[1], throttle.poll(NOW + 100));
+    assertSame(b[1], throttle.poll(NOW + 100));
+    assertNull(throttle.poll(NOW + 100));
+    assertSame(a[2], throttle.poll(NOW + 200));
+    assertSame(b[2], throttle.poll(NOW + 200));
+  }
+
+  @Test
+  public void remove() {
+    final HostThrottle throttle = new HostThrottle(new RSSConfig().withHostLimits(1, 0, 1));
+    final RSSFuture a1 = future("http://a.example.com/1");
+    final RSSFuture a2 = future("http://a.example.com/2");
+
+    assertTrue(throttle.acquire(a1, NOW));
+    assertFalse(throttle.acquire(a2, NOW));
+    assertTrue(throttle.remove(a2));
+    assertFalse(throttle.remove(a2));
+
+    // cancelled loads are not resumed
+    assertFalse(throttle.release(a1));
+    assertNull(throttle.poll(NOW));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidBurst() {
+    new RSSConfig().withHostLimits(1, 1, 0);
+  }
+
+  private static RSSFuture future(String uri) {
+    return new RSSFuture(uri, RSSFuture.DEFAULT_PRIORITY);
+  }
+
+}
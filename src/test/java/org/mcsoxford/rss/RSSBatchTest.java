@@ -0,0 +1,137 @@
+package org.mcsoxford.rss;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of batch loads of the asynchronous RSS feed loader.
+ *
+ * @author Mr Horn
+ */
+public class RSSBatchTest {
+
+  private FeedServer server;
+  private RSSLoader loader;
+
+  /**
+   * Holds loads of the slow RSS feed until the test has finished
+   */
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @Before
+  public void setup() throws IOException {
+    server = new FeedServer();
+    server.serveFixture("/feed");
+    server.serveFixture("/other");
+
+    final byte[] body = FeedServer.fixture();
+    server.serve("/slow", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        FeedServer.send(exchange, 200, body);
+      }
+    });
+  }
+
+  @After
+  public void teardown() throws InterruptedException {
+    release.countDown();
+    if (loader != null) {
+      loader.stop();
+      assertTrue(loader.awaitTermination(5, TimeUnit.SECONDS));
+    }
+    server.stop();
+  }
+
+  @Test
+  public void outcomes() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig(), 16, 2);
+    final RSSBatch batch = loader.loadAll(Arrays.asList(server.uri("/feed"),
+        server.uri("/missing"), server.uri("/other"), server.uri("/feed")));
+
+    assertTrue(batch.await(5, TimeUnit.SECONDS));
+    assertTrue(batch.isDone());
+    assertEquals(3, batch.getURIs().size());
+    assertEquals(RSSBatch.Outcome.LOADED, batch.getOutcome(server.uri("/feed")));
+    assertEquals(RSSBatch.Outcome.LOADED, batch.getOutcome(server.uri("/other")));
+    assertEquals(RSSBatch.Outcome.FAILED, batch.getOutcome(server.uri("/missing")));
+    assertTrue(batch.getCause(server.uri("/missing")) instanceof RSSReaderException);
+    assertNull(batch.getFeed(server.uri("/missing")));
+    assertEquals("Example Channel", batch.getFeed(server.uri("/feed")).getTitle());
+    assertEquals(2, batch.getFeeds().size());
+
+    // batch loads are not delivered individually
+    assertNull(loader.poll());
+  }
+
+  @Test
+  public void deadline() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig(), 16, 1);
+    final RSSBatch batch = loader.loadAll(Arrays.asList(server.uri("/slow"),
+        server.uri("/feed")), 200, TimeUnit.MILLISECONDS);
+
+    // the slow load is abandoned and the queued one cancelled
+    assertTrue(batch.await(5, TimeUnit.SECONDS));
+    assertEquals(RSSBatch.Outcome.TIMED_OUT, batch.getOutcome(server.uri("/slow")));
+    assertEquals(RSSBatch.Outcome.TIMED_OUT, batch.getOutcome(server.uri("/feed")));
+  }
+
+  @Test
+  public void deadlineRemoved() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig(), 16, 2);
+    final RSSBatch batch = loader.loadAll(Arrays.asList(server.uri("/feed"),
+        server.uri("/other")), 1, TimeUnit.HOURS);
+
+    // the deadline does not outlive a batch which completes early
+    assertTrue(batch.await(5, TimeUnit.SECONDS));
+    assertEquals(0, loader.scheduled());
+  }
+
+  @Test
+  public void cancel() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig(), 16, 1);
+    final RSSBatch batch = loader.loadAll(Arrays.asList(server.uri("/slow"),
+        server.uri("/feed")));
+    assertFalse(batch.isDone());
+
+    batch.cancel();
+    assertTrue(batch.isDone());
+    assertEquals(RSSBatch.Outcome.CANCELLED, batch.getOutcome(server.uri("/feed")));
+  }
+
+  @Test
+  public void stopped() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig(), 16, 1);
+    loader.stop();
+
+    final RSSBatch batch = loader.loadAll(Collections.singleton(server.uri("/feed")));
+    assertTrue(batch.isDone());
+    assertEquals(RSSBatch.Outcome.FAILED, batch.getOutcome(server.uri("/feed")));
+    assertTrue(batch.getCause(server.uri("/feed")) instanceof RejectedExecutionException);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownURI() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig(), 16, 1);
+    loader.loadAll(Collections.singleton(server.uri("/feed"))).getOutcome("http://example.com/");
+  }
+
+}
@@ -0,0 +1,229 @@
+package org.mcsoxford.rss;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test of the in-memory RSS feed cache.
+ *
+ * @author Mr Horn
+ */
+public class RSSCachingReaderTest {
+
+  private static final long MINUTE = 60 * 1000L;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private FeedServer server;
+
+  /**
+   * Class under test with a manually advanced clock
+   */
+  private RSSCachingReader reader;
+  private long time;
+
+  @Before
+  public void setup() throws IOException {
+    server = new FeedServer();
+    server.serveFixture("/a");
+    server.serveFixture("/b");
+    server.serve("/ttl", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        FeedServer.send(exchange, 200,
+            "<rss><channel><title>TTL</title><ttl>30</ttl></channel></rss>".getBytes("UTF-8"));
+      }
+    });
+    server.serve("/etag", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("ETag", "\"v1\"");
+        if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          FeedServer.send(exchange, 304, null);
+        } else {
+          FeedServer.send(exchange, 200, FeedServer.fixture());
+        }
+      }
+    });
+
+    reader = new RSSCachingReader(new RSSReader(), 2, 5 * MINUTE, 60 * MINUTE) {
+      @Override
+      long now() {
+        return time;
+      }
+    };
+  }
+
+  @After
+  public void teardown() {
+    reader.close();
+    server.stop();
+  }
+
+  @Test
+  public void hit() throws RSSReaderException {
+    final RSSFeed feed = reader.load(server.uri("/a"));
+    assertSame(feed, reader.load(server.uri("/a")));
+
+    assertEquals(1, server.requests.get());
+    assertEquals(1, reader.getHitCount());
+    assertEquals(1, reader.getMissCount());
+  }
+
+  @Test
+  public void expireAfterMinTTL() throws RSSReaderException {
+    reader.load(server.uri("/a"));
+    time += 5 * MINUTE - 1;
+    reader.load(server.uri("/a"));
+    assertEquals(1, server.requests.get());
+
+    time += 1;
+    reader.load(server.uri("/a"));
+    assertEquals(2, server.requests.get());
+  }
+
+  @Test
+  public void expireAfterTTL() throws RSSReaderException {
+    reader.load(server.uri("/ttl"));
+    time += 30 * MINUTE - 1;
+    reader.load(server.uri("/ttl"));
+    assertEquals(1, server.requests.get());
+
+    time += 1;
+    reader.load(server.uri("/ttl"));
+    assertEquals(2, server.requests.get());
+  }
+
+  @Test
+  public void evictLeastRecentlyUsed() throws RSSReaderException {
+    reader.load(server.uri("/a"));
+    reader.load(server.uri("/b"));
+    reader.load(server.uri("/a"));
+    reader.load(server.uri("/ttl"));
+    assertEquals(2, reader.size());
+
+    reader.load(server.uri("/a"));
+    assertEquals(3, server.requests.get());
+
+    reader.load(server.uri("/b"));
+    assertEquals(4, server.requests.get());
+  }
+
+  @Test
+  public void revalidate() throws RSSReaderException {
+    final RSSFeed feed = reader.load(server.uri("/etag"));
+    time += 5 * MINUTE;
+
+    assertSame(feed, reader.load(server.uri("/etag")));
+    assertEquals(2, server.requests.get());
+
+    // revalidation renews the expiry time
+    assertSame(feed, reader.load(server.uri("/etag")));
+    assertEquals(2, server.requests.get());
+  }
+
+  @Test
+  public void loadIfModified() throws RSSReaderException {
+    reader.load(server.uri("/a"));
+    try {
+      reader.loadIfModified(server.uri("/a"));
+      fail("RSSNotModifiedException expected");
+    } catch (RSSNotModifiedException e) {
+      assertEquals(304, e.getStatus());
+    }
+    assertEquals(1, server.requests.get());
+  }
+
+  @Test
+  public void coldStart() throws RSSReaderException {
+    final RSSDiskCache disk = new RSSDiskCache(folder.getRoot());
+    final RSSCachingReader first = newDiskReader(disk);
+    final RSSFeed feed = first.load(server.uri("/etag"));
+    first.close();
+
+    // after a restart, the RSS feed is read from disk
+    final RSSCachingReader second = newDiskReader(disk);
+    try {
+      final RSSFeed stored = second.load(server.uri("/etag"));
+      RSSDiskCacheTest.assertFeedEquals(feed, stored);
+      assertEquals(1, server.requests.get());
+      assertEquals(1, second.getHitCount());
+
+      // and revalidated with the stored ETag once it expires
+      time += 5 * MINUTE;
+      assertSame(stored, second.load(server.uri("/etag")));
+      assertEquals(2, server.requests.get());
+      assertEquals(1, second.getMissCount());
+    } finally {
+      second.close();
+    }
+  }
+
+  @Test
+  public void revalidateOnDisk() throws RSSReaderException {
+    final AtomicInteger writes = new AtomicInteger();
+    final RSSDiskCache disk = new RSSDiskCache(folder.getRoot()) {
+      @Override
+      boolean put(String uri, RSSFeed feed, Validators validators, long fetched) {
+        writes.incrementAndGet();
+        return super.put(uri, feed, validators, fetched);
+      }
+    };
+    final RSSCachingReader first = newDiskReader(disk);
+    try {
+      first.load(server.uri("/etag"));
+      time += 5 * MINUTE;
+      first.load(server.uri("/etag"));
+      assertEquals(2, server.requests.get());
+    } finally {
+      first.close();
+    }
+
+    // a 304 only renews the stored time rather than rewriting the RSS feed
+    assertEquals(1, writes.get());
+    final RSSDiskCache.Entry stored = disk.get(server.uri("/etag"));
+    assertEquals(time, stored.fetched);
+    assertEquals("\"v1\"", stored.validators.etag);
+  }
+
+  @Test
+  public void preload() throws RSSReaderException {
+    final RSSDiskCache disk = new RSSDiskCache(folder.getRoot());
+    final RSSCachingReader first = newDiskReader(disk);
+    first.load(server.uri("/a"));
+    first.load(server.uri("/b"));
+    first.close();
+
+    final RSSCachingReader second = newDiskReader(disk);
+    try {
+      assertEquals(2, second.preload());
+      assertEquals(2, second.size());
+      second.load(server.uri("/a"));
+      assertEquals(2, server.requests.get());
+    } finally {
+      second.close();
+    }
+  }
+
+  private RSSCachingReader newDiskReader(RSSDiskCache disk) {
+    return new RSSCachingReader(new RSSReader(), 2, 5 * MINUTE, 60 * MINUTE, disk) {
+      @Override
+      long now() {
+        return time;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,155 @@
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the on-disk RSS feed cache.
+ *
+ * @author Mr Horn
+ */
+public class RSSDiskCacheTest {
+
+  private static final String URI = "http://example.com/rss";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Class under test
+   */
+  private RSSDiskCache cache;
+
+  /**
+   * Fixture data
+   */
+  private RSSFeed feed;
+
+  @Before
+  public void setup() throws IOException {
+    cache = new RSSDiskCache(new File(folder.getRoot(), "feeds"));
+    feed = new RSSParser(new RSSConfig()).parse(
+        new ByteArrayInputStream(FeedServer.fixture()));
+  }
+
+  @Test
+  public void roundTrip() {
+    assertTrue(cache.put(URI, feed, new Validators("\"v1\"", null), 42L));
+
+    final RSSDiskCache.Entry entry = cache.get(URI);
+    assertEquals(URI, entry.uri);
+    assertEquals(42L, entry.fetched);
+    assertEquals("\"v1\"", entry.validators.etag);
+    assertNull(entry.validators.lastModified);
+    assertFeedEquals(feed, entry.feed);
+  }
+
+  @Test
+  public void replace() {
+    cache.put(URI, feed, null, 1L);
+    cache.put(URI, feed, null, 2L);
+
+    assertEquals(2L, cache.get(URI).fetched);
+    assertNull(cache.get(URI).validators);
+    assertEquals(1, folder.getRoot().listFiles()[0].list().length);
+  }
+
+  @Test
+  public void missing() {
+    assertNull(cache.get(URI));
+    cache.put(URI, feed, null, 1L);
+    cache.remove(URI);
+    assertNull(cache.get(URI));
+  }
+
+  @Test
+  public void getAll() {
+    cache.put(URI, feed, null, 1L);
+    cache.put(URI + "2", feed, null, 2L);
+
+    final List<RSSDiskCache.Entry> entries = cache.getAll();
+    assertEquals(2, entries.size());
+
+    cache.clear();
+    assertTrue(cache.getAll().isEmpty());
+  }
+
+  @Test
+  public void corrupt() throws IOException {
+    cache.put(URI, feed, null, 1L);
+    final File file = folder.getRoot().listFiles()[0].listFiles()[0];
+    final FileOutputStream out = new FileOutputStream(file);
+    out.write(new byte[] { 'R', 'S', 'S', 'C', 0 });
+    out.close();
+
+    assertNull(cache.get(URI));
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void corruptLength() throws IOException {
+    cache.put(URI, feed, null, 1L);
+    final File file = folder.getRoot().listFiles()[0].listFiles()[0];
+    final java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw");
+    try {
+      // the length prefix follows the header, URI, time and validators
+      raf.seek(4 + 1 + 2 + URI.length() + 8 + 1 + 1 + 1);
+      raf.writeInt(Integer.MAX_VALUE);
+    } finally {
+      raf.close();
+    }
+
+    assertNull(cache.get(URI));
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void staleTempFiles() throws IOException {
+    final File directory = new File(folder.getRoot(), "feeds");
+    final File stale = new File(directory, "rss123.tmp");
+    final File fresh = new File(directory, "rss456.tmp");
+    assertTrue(stale.createNewFile());
+    assertTrue(fresh.createNewFile());
+    assertTrue(stale.setLastModified(System.currentTimeMillis() - 10 * 60 * 1000L));
+
+    new RSSDiskCache(directory);
+    assertFalse(stale.exists());
+    assertTrue(fresh.exists());
+  }
+
+  static void assertFeedEquals(RSSFeed expected, RSSFeed actual) {
+    assertEquals(expected.getTitle(), actual.getTitle());
+    assertEquals(expected.getLink(), actual.getLink());
+    assertEquals(expected.getDescription(), actual.getDescription());
+    assertEquals(expected.getLastBuildDate(), actual.getLastBuildDate());
+    assertEquals(expected.getTTL(), actual.getTTL());
+    assertEquals(expected.getItems().size(), actual.getItems().size());
+
+    for (int i = 0; i < expected.getItems().size(); i++) {
+      final RSSItem e = expected.getItems().get(i);
+      final RSSItem a = actual.getItems().get(i);
+      assertEquals(e.getTitle(), a.getTitle());
+      assertEquals(e.getLink(), a.getLink());
+      assertEquals(e.getDescription(), a.getDescription());
+      assertEquals(e.getContent(), a.getContent());
+      assertEquals(e.getPubDate(), a.getPubDate());
+      assertEquals(e.getCategories(), a.getCategories());
+      assertEquals(e.getThumbnails(), a.getThumbnails());
+      for (int j = 0; j < e.getThumbnails().size(); j++) {
+        assertEquals(e.getThumbnails().get(j).getWidth(), a.getThumbnails().get(j).getWidth());
+        assertEquals(e.getThumbnails().get(j).getHeight(), a.getThumbnails().get(j).getHeight());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,218 @@
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the memory-mapped RSS item history.
+ *
+ * @author Mr Horn
+ */
+public class RSSItemStoreTest {
+
+  private static final String FEED = "http://example.com/rss";
+  private static final String OTHER = "http://example.org/rss";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Class under test with small segments
+   */
+  private RSSItemStore store;
+
+  @Before
+  public void setup() {
+    store = new RSSItemStore(folder.getRoot(), 256);
+  }
+
+  @After
+  public void teardown() {
+    store.close();
+  }
+
+  @Test
+  public void newestFirst() {
+    for (int i = 0; i < 10; i++) {
+      store.append(FEED, item(i));
+      store.append(OTHER, item(100 + i));
+    }
+
+    assertEquals(10, store.size(FEED));
+    assertEquals(titles(9, 0), titles(store.items(FEED)));
+    assertEquals(titles(109, 100), titles(store.items(OTHER)));
+    assertFalse(store.items("http://example.net/").iterator().hasNext());
+
+    // several segments are needed
+    assertTrue(folder.getRoot().list().length > 1);
+  }
+
+  @Test
+  public void find() {
+    for (int i = 0; i < 10; i++) {
+      store.append(FEED, item(i));
+    }
+    store.append(FEED, item(3));
+
+    assertEquals("Item 3", store.find(FEED, "http://example.com/3").getTitle());
+    assertNull(store.find(FEED, "http://example.com/42"));
+    assertNull(store.find(OTHER, "http://example.com/3"));
+  }
+
+  @Test
+  public void reopen() {
+    for (int i = 0; i < 10; i++) {
+      store.append(FEED, item(i));
+    }
+    store.close();
+
+    store = new RSSItemStore(folder.getRoot(), 256);
+    assertEquals(titles(9, 0), titles(store.items(FEED)));
+
+    store.append(FEED, item(10));
+    assertEquals("Item 10", store.items(FEED).iterator().next().getTitle());
+  }
+
+  @Test
+  public void largeItem() {
+    final RSSItem item = item(0);
+    final StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      content.append("Lorem ipsum dolor sit amet. ");
+    }
+    item.setContent(content.toString());
+    store.append(FEED, item);
+    store.append(FEED, item(1));
+
+    assertEquals(content.toString(), store.find(FEED, "http://example.com/0").getContent());
+  }
+
+  @Test
+  public void compact() {
+    for (int i = 0; i < 20; i++) {
+      store.append(FEED, item(i));
+    }
+    final int segments = folder.getRoot().list().length;
+
+    // items are published one hour apart
+    assertEquals(10, store.compact(date(10).getTime()));
+    assertEquals(titles(19, 10), titles(store.items(FEED)));
+    assertTrue(folder.getRoot().list().length < segments);
+
+    store.close();
+    store = new RSSItemStore(folder.getRoot(), 256);
+    assertEquals(titles(19, 10), titles(store.items(FEED)));
+    assertEquals(0, store.compact(date(10).getTime()));
+  }
+
+  @Test
+  public void compactStaleTempFiles() throws IOException {
+    for (int i = 0; i < 20; i++) {
+      store.append(FEED, item(i));
+    }
+
+    // a crash during an earlier compaction left copies of the full segments
+    for (File file : folder.getRoot().listFiles()) {
+      final String name = file.getName();
+      final File temp = new File(folder.getRoot(),
+          name.substring(0, name.indexOf('.')) + ".tmp");
+      copy(file, temp);
+    }
+
+    assertEquals(10, store.compact(date(10).getTime()));
+    store.close();
+    store = new RSSItemStore(folder.getRoot(), 256);
+    assertEquals(titles(19, 10), titles(store.items(FEED)));
+  }
+
+  @Test
+  public void corruptLength() throws IOException {
+    store.close();
+    store = new RSSItemStore(folder.getRoot(), 4096);
+    for (int i = 0; i < 3; i++) {
+      store.append(FEED, item(i));
+    }
+    store.close();
+
+    // the length of the second record points far beyond the segment
+    final File[] files = folder.getRoot().listFiles();
+    assertEquals(1, files.length);
+    final RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+    try {
+      final int length = file.readInt();
+      file.seek(20);
+      final int feedLength = file.readUnsignedShort();
+      file.seek(22 + feedLength + length);
+      file.writeInt(Integer.MAX_VALUE - 8);
+    } finally {
+      file.close();
+    }
+
+    store = new RSSItemStore(folder.getRoot(), 4096);
+    assertEquals(titles(0, 0), titles(store.items(FEED)));
+
+    store.append(FEED, item(3));
+    assertEquals(Arrays.asList("Item 3", "Item 0"), titles(store.items(FEED)));
+  }
+
+  private static void copy(File from, File to) throws IOException {
+    final FileInputStream in = new FileInputStream(from);
+    try {
+      final FileOutputStream out = new FileOutputStream(to);
+      try {
+        final byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) > 0;) {
+          out.write(buffer, 0, n);
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private static RSSItem item(int i) {
+    final RSSItem item = new RSSItem((byte) 0, (byte) 0);
+    item.setTitle("Item " + i);
+    item.setLink(android.net.Uri.parse("http://example.com/" + i));
+    item.setPubDate(date(i));
+    return item;
+  }
+
+  private static Date date(int hours) {
+    return new Date(1289120534000L + hours * 3600 * 1000L);
+  }
+
+  private static List<String> titles(int from, int to) {
+    final List<String> titles = new ArrayList<String>();
+    for (int i = from; i >= to; i--) {
+      titles.add("Item " + i);
+    }
+    return titles;
+  }
+
+  private static List<String> titles(Iterable<RSSItem> items) {
+    final List<String> titles = new ArrayList<String>();
+    for (RSSItem item : items) {
+      titles.add(item.getTitle());
+    }
+    return titles;
+  }
+
+}
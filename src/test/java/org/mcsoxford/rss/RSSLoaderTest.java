@@ -0,0 +1,512 @@
+package org.mcsoxford.rss;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the asynchronous RSS feed loader against a local HTTP stub.
+ * 
+ * @author Mr Horn
+ */
+public class RSSLoaderTest {
+
+  private FeedServer server;
+
+  /**
+   * Class under test
+   */
+  private RSSLoader loader;
+
+  @Before
+  public void setup() throws IOException {
+    server = new FeedServer();
+    server.serveFixture("/feed");
+  }
+
+  @After
+  public void teardown() throws InterruptedException {
+    if (loader != null) {
+      loader.stop();
+      assertTrue(loader.awaitTermination(5, TimeUnit.SECONDS));
+    }
+    server.stop();
+  }
+
+  @Test
+  public void fifo() throws Exception {
+    loader = RSSLoader.fifo();
+    final Future<RSSFeed> future = loader.load(server.uri("/feed"));
+    assertNotNull(future);
+    assertEquals("Example Channel", future.get(5, TimeUnit.SECONDS).getTitle());
+    assertSame(future, loader.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void failure() throws Exception {
+    loader = RSSLoader.fifo();
+    final Future<RSSFeed> future = loader.load(server.uri("/missing"));
+
+    // failed loads are delivered too
+    assertSame(future, loader.poll(5, TimeUnit.SECONDS));
+    try {
+      future.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RSSReaderException);
+    }
+  }
+
+  @Test
+  public void callback() throws Exception {
+    loader = RSSLoader.fifo();
+    final CountDownLatch done = new CountDownLatch(2);
+    final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+    final RSSCallback callback = new RSSCallback() {
+      @Override
+      public void onLoaded(String uri, RSSFeed feed) {
+        results.add(feed.getTitle());
+        done.countDown();
+      }
+
+      @Override
+      public void onFailed(String uri, Exception cause) {
+        results.add(cause.getClass().getSimpleName());
+        done.countDown();
+      }
+    };
+
+    final RSSLoadFuture future = loader.load(server.uri("/feed"), 3, callback);
+    loader.load(server.uri("/missing"), 3, callback);
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(results.contains("Example Channel"));
+    assertTrue(results.contains("RSSReaderException"));
+
+    // loads with a callback are not delivered, and late callbacks run at once
+    assertNull(loader.poll());
+    future.addCallback(callback);
+    assertEquals(3, results.size());
+  }
+
+  @Test
+  public void cancel() throws Exception {
+    loader = RSSLoader.fifo();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final byte[] body = FeedServer.fixture();
+    server.serve("/blocked", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        FeedServer.send(exchange, 200, body);
+      }
+    });
+
+    final RSSLoadFuture blocked = loader.load(server.uri("/blocked"));
+    final RSSLoadFuture queued = loader.load(server.uri("/feed"));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    final Exception[] failure = new Exception[1];
+    queued.addCallback(new RSSCallback() {
+      @Override
+      public void onLoaded(String uri, RSSFeed feed) {}
+
+      @Override
+      public void onFailed(String uri, Exception cause) {
+        failure[0] = cause;
+      }
+    });
+    assertTrue(queued.cancel(false));
+    assertTrue(failure[0] instanceof CancellationException);
+    try {
+      queued.get();
+      fail("Expected CancellationException");
+    } catch (CancellationException e) {
+      // expected
+    }
+
+    // waiting for the blocked load times out after roughly the timeout
+    final long start = System.nanoTime();
+    try {
+      blocked.get(100, TimeUnit.MILLISECONDS);
+      fail("Expected TimeoutException");
+    } catch (TimeoutException e) {
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    release.countDown();
+    assertEquals("Example Channel", blocked.get(5, TimeUnit.SECONDS).getTitle());
+  }
+
+  @Test
+  public void abort() throws Exception {
+    loader = RSSLoader.fifo();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    server.serve("/stalled", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+
+    try {
+      final RSSLoadFuture stalled = loader.load(server.uri("/stalled"));
+      final RSSLoadFuture queued = loader.load(server.uri("/feed"));
+      final RSSLoadFuture next = loader.load(server.uri("/feed"));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+
+      // queued loads are removed, and loads in progress are aborted
+      assertTrue(queued.cancel(false));
+      assertFalse(stalled.cancel(false));
+      assertTrue(stalled.cancel(true));
+      assertTrue(stalled.isCancelled());
+      try {
+        stalled.get();
+        fail("Expected CancellationException");
+      } catch (CancellationException e) {
+        // expected
+      }
+
+      // the worker is free again while the server is still stalled
+      assertEquals("Example Channel", next.get(5, TimeUnit.SECONDS).getTitle());
+      assertSame(next, loader.poll(5, TimeUnit.SECONDS));
+      assertNull(loader.poll());
+      assertEquals(2, server.requests.get());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void workers() throws Exception {
+    final CountDownLatch arrived = new CountDownLatch(4);
+    final AtomicInteger together = new AtomicInteger();
+    final byte[] body = FeedServer.fixture();
+    server.serve("/slow", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        arrived.countDown();
+        try {
+          if (arrived.await(5, TimeUnit.SECONDS)) {
+            together.incrementAndGet();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        FeedServer.send(exchange, 200, body);
+      }
+    });
+
+    loader = RSSLoader.fifo(new RSSConfig(), 16, 4);
+    for (int i = 0; i < 4; i++) {
+      assertNotNull(loader.load(server.uri("/slow")));
+    }
+    for (int i = 0; i < 4; i++) {
+      final Future<RSSFeed> future = loader.poll(5, TimeUnit.SECONDS);
+      assertNotNull(future);
+      assertEquals("Example Channel", future.get().getTitle());
+    }
+
+    // four workers load the slow feeds concurrently
+    assertEquals(4, together.get());
+  }
+
+  @Test
+  public void threadPerLoad() throws Exception {
+    final AtomicInteger threads = new AtomicInteger();
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger maxConcurrent = new AtomicInteger();
+    // loads are held until two of them are in progress at the same time
+    final CyclicBarrier pair = new CyclicBarrier(2);
+    final byte[] body = FeedServer.fixture();
+    server.serve("/slow", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        final int n = concurrent.incrementAndGet();
+        synchronized (maxConcurrent) {
+          maxConcurrent.set(Math.max(maxConcurrent.get(), n));
+        }
+        try {
+          pair.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (BrokenBarrierException e) {
+          // reported by the assertions below
+        } catch (TimeoutException e) {
+          // reported by the assertions below
+        } finally {
+          concurrent.decrementAndGet();
+        }
+        FeedServer.send(exchange, 200, body);
+      }
+    });
+
+    loader = RSSLoader.fifo(new RSSConfig(), 16, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        threads.incrementAndGet();
+        return new Thread(runnable);
+      }
+    }, 2);
+
+    for (int i = 0; i < 6; i++) {
+      assertNotNull(loader.load(server.uri("/slow")));
+    }
+    for (int i = 0; i < 6; i++) {
+      final Future<RSSFeed> future = loader.poll(5, TimeUnit.SECONDS);
+      assertNotNull(future);
+      assertEquals("Example Channel", future.get().getTitle());
+    }
+
+    assertEquals(6, threads.get());
+    assertEquals(2, maxConcurrent.get());
+  }
+
+  @Test
+  public void hostLimits() throws Exception {
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger maxConcurrent = new AtomicInteger();
+    // each load waits briefly for a second one which would break the limit
+    final CountDownLatch overlap = new CountDownLatch(2);
+    final byte[] body = FeedServer.fixture();
+    server.serve("/slow", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        final int n = concurrent.incrementAndGet();
+        synchronized (maxConcurrent) {
+          maxConcurrent.set(Math.max(maxConcurrent.get(), n));
+        }
+        overlap.countDown();
+        try {
+          overlap.await(50, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          concurrent.decrementAndGet();
+        }
+        FeedServer.send(exchange, 200, body);
+      }
+    });
+
+    loader = RSSLoader.fifo(new RSSConfig().withHostLimits(1, 0, 1), 16, 4);
+    for (int i = 0; i < 4; i++) {
+      assertNotNull(loader.load(server.uri("/slow")));
+    }
+    for (int i = 0; i < 4; i++) {
+      final Future<RSSFeed> future = loader.poll(5, TimeUnit.SECONDS);
+      assertNotNull(future);
+      assertEquals("Example Channel", future.get().getTitle());
+    }
+
+    // four workers but only one load at a time from the same host
+    assertEquals(1, maxConcurrent.get());
+  }
+
+  @Test
+  public void hostLimitsStop() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig().withHostLimits(0, 20, 1), 16, 2);
+    for (int i = 0; i < 3; i++) {
+      assertNotNull(loader.load(server.uri("/feed")));
+    }
+    loader.stop();
+
+    // parked loads are completed before the workers stop
+    assertTrue(loader.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(3, server.requests.get());
+  }
+
+  @Test
+  public void coalesce() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final byte[] body = FeedServer.fixture();
+    server.serve("/slow", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        FeedServer.send(exchange, 200, body);
+      }
+    });
+
+    loader = RSSLoader.fifo(new RSSConfig().withCoalescing(0), 16, 2);
+    final Future<RSSFeed> future = loader.load(server.uri("/slow"));
+    for (int i = 0; i < 10; i++) {
+      assertSame(future, loader.load(server.uri("/slow")));
+    }
+    release.countDown();
+
+    // each caller retrieves the shared load once
+    for (int i = 0; i < 11; i++) {
+      assertSame(future, loader.poll(5, TimeUnit.SECONDS));
+    }
+    assertNull(loader.poll());
+    assertEquals(1, server.requests.get());
+
+    // loaded feeds are not shared without a freshness window
+    final long deadline = System.currentTimeMillis() + 5000;
+    Future<RSSFeed> next;
+    while ((next = loader.load(server.uri("/slow"))) == future
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertNotSame(future, next);
+    Future<RSSFeed> polled;
+    while ((polled = loader.poll(5, TimeUnit.SECONDS)) == future) {
+      // callers which shared the first load before it was released
+    }
+    assertSame(next, polled);
+    assertEquals(2, server.requests.get());
+  }
+
+  @Test
+  public void coalesceFreshness() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig().withCoalescing(60 * 1000L), 16, 1);
+    final Future<RSSFeed> future = loader.load(server.uri("/feed"));
+    assertSame(future, loader.poll(5, TimeUnit.SECONDS));
+
+    final Future<RSSFeed> shared = loader.load(server.uri("/feed"));
+    assertSame(future, shared);
+    assertTrue(shared.isDone());
+    assertEquals(1, server.requests.get());
+
+    // the completed load is delivered again to the second caller
+    assertSame(future, loader.poll(5, TimeUnit.SECONDS));
+    assertNull(loader.poll());
+  }
+
+  @Test
+  public void coalesceFailure() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig().withCoalescing(60 * 1000L), 16, 1);
+    final Future<RSSFeed> future = loader.load(server.uri("/missing"));
+    assertSame(future, loader.poll(5, TimeUnit.SECONDS));
+
+    // failed loads are not shared
+    assertNotSame(future, loader.load(server.uri("/missing")));
+  }
+
+  @Test
+  public void subscribe() throws Exception {
+    loader = RSSLoader.fifo(new RSSConfig().withRefreshInterval(0, 50, 50), 16, 1);
+    assertTrue(loader.subscribe(server.uri("/feed")));
+    assertFalse(loader.subscribe(server.uri("/feed")));
+
+    // the feed never changes, so it is reloaded after the maximum interval
+    for (int i = 0; i < 3; i++) {
+      final Future<RSSFeed> future = loader.poll(5, TimeUnit.SECONDS);
+      assertNotNull(future);
+      assertEquals("Example Channel", future.get().getTitle());
+    }
+
+    assertTrue(loader.unsubscribe(server.uri("/feed")));
+    assertFalse(loader.unsubscribe(server.uri("/feed")));
+
+    // the pending refresh is dropped once due, and a load queued behind a
+    // refresh in progress finds that no further refresh has been scheduled
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (loader.scheduled() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertNotNull(loader.load(server.uri("/feed")).get(5, TimeUnit.SECONDS));
+    assertEquals(0, loader.scheduled());
+  }
+
+  @Test
+  public void subscribeStop() throws Exception {
+    final List<Thread> before = schedulers();
+    loader = RSSLoader.fifo(new RSSConfig().withRefreshInterval(0, 60000, 60000), 16, 1);
+    assertTrue(loader.subscribe(server.uri("/feed")));
+    assertNotNull(loader.poll(5, TimeUnit.SECONDS));
+
+    final List<Thread> started = schedulers();
+    started.removeAll(before);
+    assertEquals(1, started.size());
+    assertTrue(started.get(0).isDaemon());
+
+    // the pending refresh must not keep the scheduler alive
+    loader.stop();
+    started.get(0).join(5000);
+    assertFalse(started.get(0).isAlive());
+  }
+
+  private static List<Thread> schedulers() {
+    final List<Thread> schedulers = new ArrayList<Thread>();
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if ("Asynchronous RSS feed scheduler".equals(thread.getName())) {
+        schedulers.add(thread);
+      }
+    }
+    return schedulers;
+  }
+
+  @Test
+  public void subscribeNotModified() throws Exception {
+    final byte[] body = FeedServer.fixture();
+    server.serve("/etag", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          FeedServer.send(exchange, 304, null);
+        } else {
+          exchange.getResponseHeaders().set("ETag", "\"v1\"");
+          FeedServer.send(exchange, 200, body);
+        }
+      }
+    });
+
+    loader = RSSLoader.fifo(new RSSConfig().withRefreshInterval(0, 20, 20), 16, 1);
+    assertTrue(loader.subscribe(server.uri("/etag")));
+    assertNotNull(loader.poll(5, TimeUnit.SECONDS));
+
+    // unmodified refreshes are not delivered; the single worker has finished
+    // the second and third request once it sends the fourth
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (server.requests.get() < 4 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(server.requests.get() >= 4);
+    assertNull(loader.poll());
+  }
+
+  @Test
+  public void stop() throws Exception {
+    loader = RSSLoader.priority(new RSSConfig(), 16, 3);
+    loader.stop();
+    assertTrue(loader.awaitTermination(5, TimeUnit.SECONDS));
+    assertNull(loader.load(server.uri("/feed")));
+  }
+
+}
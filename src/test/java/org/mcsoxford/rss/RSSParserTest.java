@@ -83,6 +83,161 @@ public class RSSParserTest {
     assertFalse(items.hasNext());
   }
 
+  @Test
+  public void parseReuse() throws Exception {
+    parser = new RSSParser(new RSSConfig().withParserReuse(true));
+
+    final RSSFeed first = parse(stream);
+    final RSSFeed second = parse(getClass().getClassLoader().getResourceAsStream("rssfeed.xml"));
+    assertNotSame(first, second);
+    assertEquals(2, first.getItems().size());
+    assertEquals(2, second.getItems().size());
+    assertEquals(first.getItems(), second.getItems());
+  }
+
+  @Test
+  public void parseLazy() throws Exception {
+    final RSSFeed eager = parse(getClass().getClassLoader().getResourceAsStream("rssfeed.xml"));
+    parser = new RSSParser(new RSSConfig().withLazyConversion(true));
+    final int parses = Uri.PARSES.get();
+    final RSSFeed lazy = parse(stream);
+
+    // no link or thumbnail URL has been converted yet
+    assertEquals(parses, Uri.PARSES.get());
+    assertEquals("News for November", lazy.getItems().get(0).getTitle());
+    assertEquals(parses, Uri.PARSES.get());
+
+    // a link is converted once on first access
+    final RSSItem first = lazy.getItems().get(0);
+    assertSame(first.getLink(), first.getLink());
+    assertEquals(parses + 1, Uri.PARSES.get());
+    final MediaThumbnail thumbnail = first.getThumbnails().get(0);
+    assertEquals("http://example.com/media/images/12/jpg/_7_2.jpg", thumbnail.toString());
+    assertEquals(parses + 1, Uri.PARSES.get());
+    assertSame(thumbnail.getUrl(), thumbnail.getUrl());
+    assertEquals(parses + 2, Uri.PARSES.get());
+
+    assertEquals(eager.getLink(), lazy.getLink());
+    assertEquals(eager.getItems(), lazy.getItems());
+    for (int i = 0; i < eager.getItems().size(); i++) {
+      final RSSItem expected = eager.getItems().get(i);
+      final RSSItem actual = lazy.getItems().get(i);
+      assertEquals(expected.getLinkString(), actual.getLinkString());
+      assertEquals(expected.getPubDate(), actual.getPubDate());
+      assertSame(actual.getPubDate(), actual.getPubDate());
+      assertEquals(expected.getThumbnails(), actual.getThumbnails());
+    }
+  }
+
+  @Test
+  public void parseLazyInvalidDate() throws Exception {
+    final String xml = "<rss><channel><title>Dates</title>"
+        + "<item><title>Invalid</title><pubDate>yesterday</pubDate>"
+        + "<enclosure url=\"http://example.com/1.mp3\" length=\"1\" type=\"audio/mpeg\"/></item>"
+        + "</channel></rss>";
+
+    // strict eager parsing rejects the date while parsing
+    try {
+      parse(new java.io.ByteArrayInputStream(xml.getBytes("UTF-8")));
+      fail("Expected RSSFault");
+    } catch (RSSFault e) {
+      // expected
+    }
+
+    // lazily, the date is only parsed by the getter
+    parser = new RSSParser(new RSSConfig().withLazyConversion(true));
+
+    final RSSItem item = parse(new java.io.ByteArrayInputStream(xml.getBytes("UTF-8")))
+        .getItems().get(0);
+    assertEquals("Invalid", item.getTitle());
+    assertNull(item.getPubDate());
+    assertEquals(Uri.parse("http://example.com/1.mp3"), item.getEnclosure().getUrl());
+  }
+
+  @Test
+  public void parseListener() throws Exception {
+    final java.util.List<RSSFeed> channels = new java.util.ArrayList<RSSFeed>();
+    final java.util.List<RSSItem> items = new java.util.ArrayList<RSSItem>();
+    try {
+      parser.parse(stream, new RSSListener() {
+        @Override
+        public void onChannel(RSSFeed feed) {
+          channels.add(feed);
+        }
+
+        @Override
+        public boolean onItem(RSSItem item) {
+          items.add(item);
+          return true;
+        }
+      });
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+
+    assertEquals(1, channels.size());
+    assertEquals("Example Channel", channels.get(0).getTitle());
+    assertTrue(channels.get(0).getItems().isEmpty());
+    assertEquals(2, items.size());
+    assertEquals("News for November", items.get(0).getTitle());
+    assertEquals("News for October", items.get(1).getTitle());
+  }
+
+  @Test
+  public void parseListenerStop() throws Exception {
+    final java.util.List<RSSItem> items = new java.util.ArrayList<RSSItem>();
+    try {
+      parser.parse(stream, new RSSListener() {
+        @Override
+        public void onChannel(RSSFeed feed) {}
+
+        @Override
+        public boolean onItem(RSSItem item) {
+          items.add(item);
+          return false;
+        }
+      });
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+
+    assertEquals(1, items.size());
+    assertEquals("News for November", items.get(0).getTitle());
+  }
+
+  @Test
+  public void parseMaxItems() throws Exception {
+    parser = new RSSParser(new RSSConfig().withMaxItems(1));
+
+    final RSSFeed feed = parse(stream);
+    assertTrue(feed.isTruncated());
+    assertEquals(1, feed.getItems().size());
+    assertEquals("News for November", feed.getItems().get(0).getTitle());
+  }
+
+  @Test
+  public void parseMinPubDate() throws Exception {
+    GregorianCalendar calendar = new GregorianCalendar(2010, 10, 8);
+    calendar.setTimeZone(TimeZone.getTimeZone("Etc/GMT"));
+    parser = new RSSParser(new RSSConfig().withMinPubDate(calendar.getTime()));
+
+    final RSSFeed feed = parse(stream);
+    assertTrue(feed.isTruncated());
+    assertEquals("Example Channel", feed.getTitle());
+    assertTrue(feed.getItems().isEmpty());
+  }
+
+  @Test
+  public void parseNotTruncated() throws Exception {
+    GregorianCalendar calendar = new GregorianCalendar(2010, 10, 1);
+    calendar.setTimeZone(TimeZone.getTimeZone("Etc/GMT"));
+    parser = new RSSParser(new RSSConfig().withMinPubDate(calendar.getTime()).withMaxItems(5));
+
+    final RSSFeed feed = parse(stream);
+    assertFalse(feed.isTruncated());
+    assertEquals(2, feed.getItems().size());
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void parseStreamNullArgument() throws Exception {
     parse(null);
@@ -0,0 +1,142 @@
+package org.mcsoxford.rss;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for XML pull parser which parses RSS feeds.
+ * 
+ * @author Mr Horn
+ */
+public class RSSPullParserTest {
+
+  /**
+   * Class under test
+   */
+  private RSSPullParser parser;
+
+  @Before
+  public void setup() throws FileNotFoundException {
+    parser = new RSSPullParser(new RSSConfig());
+  }
+
+  /**
+   * Returns a new stream of the fixture data.
+   */
+  private InputStream fixture() {
+    final InputStream stream = getClass().getClassLoader().getResourceAsStream("rssfeed.xml");
+    assertNotNull(stream);
+    return stream;
+  }
+
+  @Test
+  public void parseSameAsSax() throws Exception {
+    final RSSFeed expected = parse(new RSSParser(new RSSConfig()), fixture());
+    final RSSFeed feed = parse(parser, fixture());
+
+    assertEquals(expected.getTitle(), feed.getTitle());
+    assertEquals(expected.getLink(), feed.getLink());
+    assertEquals(expected.getDescription(), feed.getDescription());
+    assertEquals(expected.getLastBuildDate(), feed.getLastBuildDate());
+    assertEquals(expected.getItems().size(), feed.getItems().size());
+
+    final Iterator<RSSItem> items = feed.getItems().iterator();
+    for (RSSItem item : expected.getItems()) {
+      final RSSItem actual = items.next();
+      assertEquals(item.getTitle(), actual.getTitle());
+      assertEquals(item.getLink(), actual.getLink());
+      assertEquals(item.getDescription(), actual.getDescription());
+      assertEquals(item.getContent(), actual.getContent());
+      assertEquals(item.getPubDate(), actual.getPubDate());
+      assertEquals(item.getCategories(), actual.getCategories());
+      assertEquals(item.getThumbnails().size(), actual.getThumbnails().size());
+      for (int i = 0; i < item.getThumbnails().size(); i++) {
+        assertEquals(item.getThumbnails().get(i).getUrl(), actual.getThumbnails().get(i).getUrl());
+        assertEquals(item.getThumbnails().get(i).getHeight(), actual.getThumbnails().get(i).getHeight());
+        assertEquals(item.getThumbnails().get(i).getWidth(), actual.getThumbnails().get(i).getWidth());
+      }
+    }
+  }
+
+  @Test
+  public void parseSkipsUnsupportedElements() throws Exception {
+    final String xml = "<rss><channel><title>Channel</title>"
+        + "<image><title>Image</title><url>http://example.com/a.png</url></image>"
+        + "<item><title>Item</title></item></channel></rss>";
+    final RSSFeed feed = parse(parser, new java.io.ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+    assertEquals("Channel", feed.getTitle());
+    assertEquals(1, feed.getItems().size());
+    assertEquals("Item", feed.getItems().get(0).getTitle());
+  }
+
+  @Test
+  public void parseSkips() throws Exception {
+    final String xml = "<rss><channel><title>Channel</title>"
+        + "<skipHours><hour>3</hour><hour>23</hour></skipHours>"
+        + "<skipDays><day>Monday</day></skipDays>"
+        + "<item><title>Item</title></item></channel></rss>";
+    final RSSFeed expected = parse(new RSSParser(new RSSConfig()),
+        new java.io.ByteArrayInputStream(xml.getBytes("UTF-8")));
+    final RSSFeed feed = parse(parser, new java.io.ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+    assertEquals(new java.util.HashSet<Integer>(java.util.Arrays.asList(3, 23)), feed.getSkipHours());
+    assertEquals(java.util.Collections.singleton(2), feed.getSkipDays());
+    assertEquals(expected.getSkipHours(), feed.getSkipHours());
+    assertEquals(expected.getSkipDays(), feed.getSkipDays());
+  }
+
+  @Test
+  public void parseListenerStop() throws Exception {
+    final java.util.List<RSSItem> items = new java.util.ArrayList<RSSItem>();
+    final InputStream stream = fixture();
+    try {
+      parser.parse(stream, new RSSListener() {
+        @Override
+        public void onChannel(RSSFeed feed) {
+          assertEquals("Example Channel", feed.getTitle());
+        }
+
+        @Override
+        public boolean onItem(RSSItem item) {
+          items.add(item);
+          return false;
+        }
+      });
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+
+    assertEquals(1, items.size());
+    assertEquals("News for November", items.get(0).getTitle());
+  }
+
+  @Test
+  public void parseReuse() throws Exception {
+    parser = new RSSPullParser(new RSSConfig().withParserReuse(true));
+    assertEquals(2, parse(parser, fixture()).getItems().size());
+    assertEquals(2, parse(parser, fixture()).getItems().size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseStreamNullArgument() throws Exception {
+    parse(parser, null);
+  }
+
+  /**
+   * Helper method to parse an RSS feed and closes the input stream.
+   */
+  private static RSSFeed parse(RSSParserSPI parser, InputStream stream) {
+    try {
+      return parser.parse(stream);
+    } finally {
+      Resources.closeQuietly(stream);
+    }
+  }
+}
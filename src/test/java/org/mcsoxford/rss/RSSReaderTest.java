@@ -1,9 +1,19 @@
 package org.mcsoxford.rss;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
 import static org.junit.Assert.*;
 
 /**
@@ -56,4 +66,295 @@ public class RSSReaderTest {
       assertEquals(404, e.getStatus());
     }
   }
+
+  @Test
+  public void loadIfModified() throws Exception {
+    final byte[] body = FeedServer.fixture();
+    final String[] conditions = new String[2];
+    final FeedServer server = new FeedServer();
+    server.serve("/feed", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        conditions[0] = exchange.getRequestHeaders().getFirst("If-None-Match");
+        conditions[1] = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if ("\"v1\"".equals(conditions[0])) {
+          FeedServer.send(exchange, 304, null);
+        } else {
+          exchange.getResponseHeaders().set("ETag", "\"v1\"");
+          exchange.getResponseHeaders().set("Last-Modified", "Sun, 07 Nov 2010 09:33:11 GMT");
+          FeedServer.send(exchange, 200, body);
+        }
+      }
+    });
+
+    try {
+      final String uri = server.uri("/feed");
+      assertEquals("Example Channel", reader.loadIfModified(uri).getTitle());
+      assertNull(conditions[0]);
+      assertNull(conditions[1]);
+
+      try {
+        reader.loadIfModified(uri);
+        fail("Expected RSSNotModifiedException");
+      } catch (RSSNotModifiedException e) {
+        assertEquals(304, e.getStatus());
+      }
+      assertEquals("\"v1\"", conditions[0]);
+      assertEquals("Sun, 07 Nov 2010 09:33:11 GMT", conditions[1]);
+
+      // unconditional loads always parse the RSS feed
+      assertEquals("Example Channel", reader.load(uri).getTitle());
+      assertNull(conditions[0]);
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void loadKeepsNoValidators() throws Exception {
+    final byte[] body = FeedServer.fixture();
+    final FeedServer server = new FeedServer();
+    server.serve("/feed", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("ETag", "\"v1\"");
+        FeedServer.send(exchange, 200, body);
+      }
+    });
+
+    try {
+      // only RSS feeds which are revalidated take up memory for validators
+      final String uri = server.uri("/feed");
+      reader.load(uri);
+      assertNull(reader.getValidators(uri));
+
+      reader.loadIfModified(uri);
+      assertNotNull(reader.getValidators(uri));
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void loadGzip() throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final OutputStream out = new GZIPOutputStream(bytes);
+    out.write(FeedServer.fixture());
+    out.close();
+
+    assertEquals("Example Channel", loadCompressed("gzip", bytes.toByteArray()).getTitle());
+  }
+
+  @Test
+  public void loadDeflate() throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final OutputStream out = new DeflaterOutputStream(bytes);
+    out.write(FeedServer.fixture());
+    out.close();
+
+    assertEquals("Example Channel", loadCompressed("deflate", bytes.toByteArray()).getTitle());
+  }
+
+  @Test
+  public void loadRawDeflate() throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final OutputStream out = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    out.write(FeedServer.fixture());
+    out.close();
+
+    assertEquals("Example Channel", loadCompressed("deflate", bytes.toByteArray()).getTitle());
+  }
+
+  /**
+   * Serves the compressed body if the request accepts the content coding.
+   */
+  private RSSFeed loadCompressed(final String coding, final byte[] body) throws Exception {
+    final FeedServer server = new FeedServer();
+    server.serve("/feed", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        final String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept == null || !accept.contains(coding)) {
+          FeedServer.send(exchange, 406, null);
+        } else {
+          exchange.getResponseHeaders().set("Content-Encoding", coding);
+          FeedServer.send(exchange, 200, body);
+        }
+      }
+    });
+
+    try {
+      return reader.load(server.uri("/feed"));
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void reuseConnections() throws Exception {
+    final byte[] body = FeedServer.fixture();
+    final java.util.Set<Integer> ports = java.util.Collections.synchronizedSet(
+        new java.util.HashSet<Integer>());
+    final FeedServer server = new FeedServer();
+    server.serve("/feed", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        ports.add(exchange.getRemoteAddress().getPort());
+        FeedServer.send(exchange, 200, body);
+      }
+    });
+
+    final RSSReader pooled = new RSSReader(new RSSConfig().withConnectionLimits(4, 1));
+    try {
+      for (int i = 0; i < 3; i++) {
+        assertEquals(2, pooled.load(server.uri("/feed")).getItems().size());
+      }
+    } finally {
+      pooled.close();
+      server.stop();
+    }
+
+    assertEquals(3, server.requests.get());
+    assertEquals(1, ports.size());
+  }
+
+  @Test
+  public void loadNew() throws Exception {
+    final int[] newest = { 5 };
+    final FeedServer server = new FeedServer();
+    server.serve("/feed", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        final StringBuilder xml = new StringBuilder("<rss><channel><title>Numbers</title>");
+        for (int i = newest[0]; i > 0; i--) {
+          xml.append("<item><guid>urn:").append(i).append("</guid><title>")
+              .append(i).append("</title></item>");
+        }
+        FeedServer.send(exchange, 200, xml.append("</channel></rss>").toString().getBytes("UTF-8"));
+      }
+    });
+
+    try {
+      final String uri = server.uri("/feed");
+      final RSSFeed first = reader.loadNew(uri);
+      assertEquals("Numbers", first.getTitle());
+      assertEquals(5, first.getItems().size());
+      assertFalse(first.isTruncated());
+
+      assertTrue(reader.loadNew(uri).getItems().isEmpty());
+
+      // parsing stops after three seen items
+      newest[0] = 7;
+      final RSSFeed next = reader.loadNew(uri);
+      assertEquals(2, next.getItems().size());
+      assertEquals("urn:7", next.getItems().get(0).getGuid());
+      assertEquals("urn:6", next.getItems().get(1).getGuid());
+      assertTrue(next.isTruncated());
+
+      // plain loads are unaffected
+      assertEquals(7, reader.load(uri).getItems().size());
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void loadNewAfterLoad() throws Exception {
+    final byte[] body = FeedServer.fixture();
+    final FeedServer server = new FeedServer();
+    server.serve("/etag", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          FeedServer.send(exchange, 304, null);
+        } else {
+          exchange.getResponseHeaders().set("ETag", "\"v1\"");
+          FeedServer.send(exchange, 200, body);
+        }
+      }
+    });
+
+    try {
+      final String uri = server.uri("/etag");
+      assertEquals(2, reader.load(uri).getItems().size());
+
+      // the validators of plain loads do not hide items from loadNew
+      assertEquals(2, reader.loadNew(uri).getItems().size());
+      try {
+        reader.loadNew(uri);
+        fail("Expected RSSNotModifiedException");
+      } catch (RSSNotModifiedException e) {
+        // expected
+      }
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void firstByteDeadline() throws Exception {
+    final FeedServer server = new FeedServer();
+    server.serve("/stall", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        sleep(5000);
+        FeedServer.send(exchange, 200, FeedServer.fixture());
+      }
+    });
+
+    final RSSReader deadlines = new RSSReader(new RSSConfig().withDeadlines(1000, 200, 0));
+    final long start = System.currentTimeMillis();
+    try {
+      deadlines.load(server.uri("/stall"));
+      fail("Expected RSSTimeoutException");
+    } catch (RSSTimeoutException e) {
+      assertTrue(System.currentTimeMillis() - start < 2000);
+    } finally {
+      deadlines.close();
+      server.stop();
+    }
+  }
+
+  @Test
+  public void totalDeadline() throws Exception {
+    final FeedServer server = new FeedServer();
+    server.serve("/trickle", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/rss+xml");
+        exchange.sendResponseHeaders(200, 0);
+        final OutputStream out = exchange.getResponseBody();
+        out.write("<rss><channel><title>Slow</title>".getBytes("UTF-8"));
+        // each byte arrives well within the socket timeout
+        for (int i = 0; i < 100; i++) {
+          out.write(' ');
+          out.flush();
+          sleep(50);
+        }
+        out.write("</channel></rss>".getBytes("UTF-8"));
+        out.close();
+      }
+    });
+
+    final RSSReader deadlines = new RSSReader(new RSSConfig().withDeadlines(1000, 1000, 500));
+    final long start = System.currentTimeMillis();
+    try {
+      deadlines.load(server.uri("/trickle"));
+      fail("Expected RSSTimeoutException");
+    } catch (RSSTimeoutException e) {
+      assertTrue(System.currentTimeMillis() - start < 2500);
+    } finally {
+      deadlines.close();
+      server.stop();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
 }
@@ -0,0 +1,161 @@
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the refresh times of subscribed RSS feeds.
+ *
+ * @author Mr Horn
+ */
+public class RefreshTimesTest {
+
+  /**
+   * Sunday, 07 Nov 2010 08:22:14 GMT
+   */
+  private static final long SUNDAY = 1289118134000L;
+
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+  private final RSSConfig config = new RSSConfig().withRefreshInterval(
+      10 * MINUTE, 60 * MINUTE);
+
+  @Test
+  public void ttl() throws Exception {
+    assertEquals(SUNDAY + 90 * MINUTE,
+        RefreshTimes.next(parse("<ttl>90</ttl>"), null, SUNDAY, config));
+  }
+
+  @Test
+  public void minimum() throws Exception {
+    assertEquals(SUNDAY + 10 * MINUTE,
+        RefreshTimes.next(parse("<ttl>1</ttl>"), null, SUNDAY, config));
+  }
+
+  @Test
+  public void fallback() throws Exception {
+    assertEquals(SUNDAY + 60 * MINUTE, RefreshTimes.next(parse(""), null, SUNDAY, config));
+    assertEquals(SUNDAY + 60 * MINUTE, RefreshTimes.next(null, null, SUNDAY, config));
+  }
+
+  @Test
+  public void adaptive() throws Exception {
+    final PublishRate rate = new PublishRate();
+    rate.update(parse(items(0, 20, 40)));
+    assertEquals(20 * MINUTE, rate.average());
+    assertEquals(SUNDAY + 20 * MINUTE,
+        RefreshTimes.next(parse(""), rate, SUNDAY, config));
+
+    // the moving average follows a faster publish rate
+    rate.update(parse(items(40, 50)));
+    assertEquals(17 * MINUTE, rate.average());
+    assertEquals(0, rate.idle());
+
+    // but not below the ttl
+    assertEquals(SUNDAY + 30 * MINUTE,
+        RefreshTimes.next(parse("<ttl>30</ttl>"), rate, SUNDAY, config));
+  }
+
+  @Test
+  public void backoff() throws Exception {
+    final PublishRate rate = new PublishRate();
+    final RSSFeed feed = parse(items(0, 20));
+    rate.update(feed);
+    rate.update(feed);
+    rate.update(null);
+    assertEquals(2, rate.idle());
+    assertEquals(SUNDAY + 80 * MINUTE, RefreshTimes.next(feed, rate, SUNDAY, config));
+
+    for (int i = 0; i < 10; i++) {
+      rate.update(null);
+    }
+    assertEquals(SUNDAY + 24 * HOUR, RefreshTimes.next(feed, rate, SUNDAY, config));
+
+    // new items end the backoff
+    rate.update(parse(items(20, 40)));
+    assertEquals(0, rate.idle());
+  }
+
+  @Test
+  public void maximum() throws Exception {
+    final RSSConfig bounded = config.withRefreshInterval(10 * MINUTE, 60 * MINUTE,
+        2 * HOUR);
+    assertEquals(SUNDAY + 2 * HOUR,
+        RefreshTimes.next(parse("<ttl>1440</ttl>"), null, SUNDAY, bounded));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidInterval() {
+    config.withRefreshInterval(10 * MINUTE, 60 * MINUTE, 30 * MINUTE);
+  }
+
+  @Test
+  public void skipHours() throws Exception {
+    final RSSFeed feed = parse("<skipHours><hour>9</hour><hour>10</hour></skipHours>");
+    assertEquals(new HashSet<Integer>(Arrays.asList(9, 10)), feed.getSkipHours());
+
+    // 09:22 falls into a skipped hour, so the refresh waits until 11:00
+    assertEquals(SUNDAY - 22 * MINUTE - 14000 + 3 * HOUR,
+        RefreshTimes.next(feed, null, SUNDAY, config));
+  }
+
+  @Test
+  public void skipDays() throws Exception {
+    final RSSFeed feed = parse("<ttl>60</ttl><skipDays><day>Sunday</day>"
+        + "<day>Monday</day></skipDays><skipHours><hour>0</hour></skipHours>");
+    assertEquals(new HashSet<Integer>(Arrays.asList(1, 2)), feed.getSkipDays());
+
+    // Tuesday 01:00 is the first time which is neither skipped
+    assertEquals(SUNDAY - 8 * HOUR - 22 * MINUTE - 14000 + 49 * HOUR,
+        RefreshTimes.next(feed, null, SUNDAY, config));
+  }
+
+  @Test
+  public void skipEverything() throws Exception {
+    final StringBuilder hours = new StringBuilder("<skipHours>");
+    for (int i = 0; i < 24; i++) {
+      hours.append("<hour>").append(i).append("</hour>");
+    }
+    hours.append("</skipHours>");
+
+    assertEquals(SUNDAY + 60 * MINUTE,
+        RefreshTimes.next(parse(hours.toString()), null, SUNDAY, config));
+  }
+
+  /**
+   * Returns RSS items published the specified numbers of minutes after Sunday
+   */
+  private static String items(int... minutes) {
+    final SimpleDateFormat format = new SimpleDateFormat(
+        "EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+    final StringBuilder items = new StringBuilder();
+    for (int minute : minutes) {
+      items.append("<item><title>").append(minute).append("</title><pubDate>")
+          .append(format.format(new Date(SUNDAY + minute * MINUTE)))
+          .append("</pubDate></item>");
+    }
+    return items.toString();
+  }
+
+  private static RSSFeed parse(String channel) throws UnsupportedEncodingException {
+    final String xml = "<rss><channel><title>Example</title>" + channel
+        + "</channel></rss>";
+    return new RSSParser(new RSSConfig()).parse(new ByteArrayInputStream(
+        xml.getBytes("UTF-8")));
+  }
+
+}
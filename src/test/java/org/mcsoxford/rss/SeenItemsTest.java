@@ -0,0 +1,60 @@
+package org.mcsoxford.rss;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the bounded set of seen RSS items.
+ *
+ * @author Mr Horn
+ */
+public class SeenItemsTest {
+
+  @Test
+  public void identity() {
+    final RSSItem item = new RSSItem((byte) 0, (byte) 0);
+    assertEquals(0L, SeenItems.identity(item));
+
+    item.setLink(android.net.Uri.parse("http://example.com/1"));
+    final long link = SeenItems.identity(item);
+    assertTrue(link != 0L);
+
+    item.setGuid("urn:1");
+    assertTrue(SeenItems.identity(item) != link);
+  }
+
+  @Test
+  public void itemsWithoutIdentityAreNeverSeen() {
+    final SeenItems seen = new SeenItems(4);
+    final RSSItem item = new RSSItem((byte) 0, (byte) 0);
+    seen.addAll(Arrays.asList(item));
+    assertFalse(seen.contains(item));
+  }
+
+  @Test
+  public void forgetOldest() {
+    final SeenItems seen = new SeenItems(100);
+    final List<RSSItem> items = new ArrayList<RSSItem>();
+    for (int i = 0; i < 1000; i++) {
+      items.add(item(i));
+    }
+    seen.addAll(items);
+    seen.addAll(items.subList(990, 1000));
+
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("item " + i, i >= 900, seen.contains(items.get(i)));
+    }
+  }
+
+  private static RSSItem item(int i) {
+    final RSSItem item = new RSSItem((byte) 0, (byte) 0);
+    item.setGuid("urn:" + i);
+    return item;
+  }
+
+}